@@ -0,0 +1,96 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Role;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Включается, только если заданы app.datasource.replica-urls (через запятую); без них работает
+// обычный DataSource из spring.datasource. Учётные данные реплик по умолчанию те же, что у основной БД
+@Configuration
+@ConditionalOnExpression("'${app.datasource.replica-urls:}' != ''")
+public class DataSourceRoutingConfig {
+
+    // Отставание для PostgreSQL: 0 на основной БД и на реплике, которая применила всё полученное
+    static final String POSTGRES_LAG_QUERY =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    // Пул основной БД настраивается как обычно: spring.datasource.* и spring.datasource.hikari.*
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${app.datasource.replica-urls}") List<String> replicaUrls,
+            @Value("${app.datasource.replica-username:}") String username,
+            @Value("${app.datasource.replica-password:}") String password,
+            @Value("${app.datasource.replica-pool-size:10}") int poolSize,
+            @Value("${app.datasource.replica-max-lag-ms:5000}") long maxLagMs,
+            @Value("${app.datasource.replica-check-timeout-ms:2000}") long checkTimeoutMs,
+            @Value("${app.datasource.replica-lag-query:" + POSTGRES_LAG_QUERY + "}") String lagQuery) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(replicaUrls.get(i).trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            replica.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            // Недоступная при старте реплика не должна мешать запуску: её отметит проверка здоровья
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, lagQuery,
+                Duration.ofMillis(maxLagMs), Duration.ofMillis(checkTimeoutMs), meterRegistry);
+    }
+
+    // Оборачивает методы с @ReadFromReplica в readOnly-транзакцию, которую ReplicaRoutingDataSource отдаёт реплике.
+    // Роль инфраструктуры нужна, чтобы советник подхватил тот же автопрокси, что и @Transactional;
+    // менеджер транзакций и EntityManagerFactory берутся при первом вызове, а не при создании прокси
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor readFromReplicaAdvisor(ObjectProvider<PlatformTransactionManager> transactionManager,
+                                                 ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forMethodAnnotation(ReadFromReplica.class),
+                new ReplicaReadInterceptor(transactionManager, entityManagerFactory));
+    }
+
+    // Соединение берётся при первом запросе, а не в начале транзакции — уже с известным флагом readOnly.
+    // Liquibase, JdbcTemplate и Hibernate получают именно этот DataSource
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
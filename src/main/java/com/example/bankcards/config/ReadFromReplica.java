@@ -0,0 +1,17 @@
+package com.example.bankcards.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Метод сервиса может читать с реплики: его транзакция readOnly = true уйдёт на реплику, если она есть и не отстаёт.
+// Без этой отметки любая работа, в том числе readOnly-чтения репозиториев, идёт на основную БД.
+// Ставится только на чтения, которым не важно отставание реплики на replica-max-lag-ms.
+// Прочитанное в таком методе не попадает в кэш второго уровня (ReplicaReadInterceptor)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadFromReplica {
+}
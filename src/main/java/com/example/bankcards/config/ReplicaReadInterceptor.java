@@ -0,0 +1,90 @@
+package com.example.bankcards.config;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+// Вызов метода с @ReadFromReplica: readOnly-транзакция, которую ReplicaRoutingDataSource может отдать реплике.
+// Сессия такой транзакции читает кэш второго уровня, но ничего в него не кладёт (storeMode = BYPASS):
+// сущность с отстающей реплики иначе попала бы в общий регион, и транзакции на основной БД получили бы
+// из кэша старые баланс и @Version. Внутри уже открытой read-write транзакции метод просто в ней выполняется
+class ReplicaReadInterceptor implements MethodInterceptor {
+
+    private static final String STORE_MODE = "jakarta.persistence.cache.storeMode";
+
+    private static final ThreadLocal<Boolean> active = new ThreadLocal<>();
+
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+    private volatile TransactionTemplate readOnlyTransaction;
+
+    ReplicaReadInterceptor(ObjectProvider<PlatformTransactionManager> transactionManager,
+                           ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.transactionManager = transactionManager;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // Поток сейчас внутри метода с @ReadFromReplica
+    static boolean isActive() {
+        return Boolean.TRUE.equals(active.get());
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Boolean previous = active.get();
+        active.set(Boolean.TRUE);
+        try {
+            return readOnlyTransaction().execute(status -> {
+                try {
+                    return proceedWithoutCacheWrites(invocation);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new UndeclaredThrowableException(e);
+                }
+            });
+        } catch (UndeclaredThrowableException e) {
+            throw e.getUndeclaredThrowable();
+        } finally {
+            if (previous == null) {
+                active.remove();
+            } else {
+                active.set(previous);
+            }
+        }
+    }
+
+    private Object proceedWithoutCacheWrites(MethodInvocation invocation) throws Throwable {
+        EntityManagerFactory emf = entityManagerFactory.getIfAvailable();
+        EntityManager entityManager = emf == null ? null : EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        if (entityManager == null || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return invocation.proceed();
+        }
+        Object previous = entityManager.getProperties().getOrDefault(STORE_MODE, CacheStoreMode.USE);
+        entityManager.setProperty(STORE_MODE, CacheStoreMode.BYPASS);
+        try {
+            return invocation.proceed();
+        } finally {
+            entityManager.setProperty(STORE_MODE, previous);
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = readOnlyTransaction;
+        if (template == null) {
+            template = new TransactionTemplate(transactionManager.getObject());
+            template.setReadOnly(true);
+            readOnlyTransaction = template;
+        }
+        return template;
+    }
+}
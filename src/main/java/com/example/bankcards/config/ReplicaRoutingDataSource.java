@@ -0,0 +1,146 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Транзакции readOnly = true внутри методов с @ReadFromReplica идут на реплики по кругу, всё остальное — на основную БД:
+// чтения на путях записи (проверка дубликата, логин сразу после регистрации) не должны видеть отстающую реплику.
+// Реплика участвует в чтении, пока отвечает на проверку и отстаёт не больше max-lag;
+// если подходящих реплик нет, чтение уходит на основную БД.
+// Ключ выбирается при получении соединения, поэтому снаружи нужен LazyConnectionDataSourceProxy:
+// к этому моменту флаг readOnly транзакции уже выставлен
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final Map<String, DataSource> replicas;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final int checkTimeoutSeconds;
+
+    private final Map<String, Double> lagByReplica = new ConcurrentHashMap<>();
+    private volatile List<String> healthyReplicas = List.of();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter fallbacks;
+
+    // replicas — имя пула реплики и сам пул; lagQuery возвращает отставание реплики в секундах
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicas,
+                                    String lagQuery,
+                                    Duration maxLag,
+                                    Duration checkTimeout,
+                                    MeterRegistry meterRegistry) {
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.checkTimeoutSeconds = (int) Math.max(1, checkTimeout.toSeconds());
+
+        Map<Object, Object> targets = new HashMap<>(this.replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+
+        this.fallbacks = Counter.builder("datasource.replica.fallbacks")
+                .description("Read-only транзакции, отправленные на основную БД, потому что все реплики недоступны или отстают")
+                .register(meterRegistry);
+        this.replicas.keySet().forEach(name -> {
+            Gauge.builder("datasource.replica.lag", lagByReplica, lags -> lags.getOrDefault(name, Double.NaN))
+                    .description("Отставание реплики по последней проверке, секунды; NaN — реплика не ответила")
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.healthy", this, ds -> ds.healthyReplicas.contains(name) ? 1 : 0)
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        // До первой проверки реплики в чтение не берём
+        checkReplicas();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReplicaReadInterceptor.isActive() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        List<String> healthy = healthyReplicas;
+        if (healthy.isEmpty()) {
+            if (!replicas.isEmpty()) {
+                fallbacks.increment();
+            }
+            return PRIMARY;
+        }
+        return healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica-check-interval-ms:5000}")
+    public void checkReplicas() {
+        List<String> healthy = new ArrayList<>();
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            String name = replica.getKey();
+            Double lag = measureLag(name, replica.getValue());
+            if (lag == null) {
+                lagByReplica.remove(name);
+            } else {
+                lagByReplica.put(name, lag);
+            }
+            if (lag != null && lag <= maxLagSeconds) {
+                healthy.add(name);
+            }
+        }
+        List<String> previous = healthyReplicas;
+        healthyReplicas = List.copyOf(healthy);
+        if (!previous.equals(healthyReplicas)) {
+            log.info("Replicas available for reads: {} of {} {}", healthy.size(), replicas.size(), healthy);
+        }
+    }
+
+    // Пулы реплик закрываются вместе с маршрутизатором; основной пул — отдельный бин, его закрывает контекст
+    @Override
+    public void close() throws Exception {
+        for (DataSource dataSource : replicas.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Double measureLag(String name, DataSource dataSource) {
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.setQueryTimeout(checkTimeoutSeconds);
+            Double lag = jdbcTemplate.queryForObject(lagQuery, Double.class);
+            if (lag != null && lag > maxLagSeconds) {
+                log.warn("Replica {} lags {} s behind primary (max {} s)", name, lag, maxLagSeconds);
+            }
+            return lag == null ? 0.0 : lag;
+        } catch (Exception e) {
+            log.warn("Replica {} health check failed: {}", name, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.bankcards.config;
 
+import com.example.bankcards.security.BoundedPasswordEncoder;
 import com.example.bankcards.security.CustomUserDetailsService;
 import com.example.bankcards.security.JwtAuthFilter;
+import com.example.bankcards.security.RateLimitFilter;
+import com.example.bankcards.security.RateLimitRule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -17,15 +23,20 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.List;
+
 @Configuration
 public class SecurityConfig {
 
     private final JwtAuthFilter jwtAuthFilter;
     private final CustomUserDetailsService userDetailsService;
+    private final Environment environment;
 
-    public SecurityConfig(JwtAuthFilter jwtAuthFilter, CustomUserDetailsService userDetailsService) {
+    public SecurityConfig(JwtAuthFilter jwtAuthFilter, CustomUserDetailsService userDetailsService,
+                          Environment environment) {
         this.jwtAuthFilter = jwtAuthFilter;
         this.userDetailsService = userDetailsService;
+        this.environment = environment;
     }
 
     @Bean
@@ -44,16 +55,25 @@ public class SecurityConfig {
 
                         // публичные эндпоинты
                         .requestMatchers("/api/auth/**").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+
+                        // метрики
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         // ADMIN
                         .requestMatchers(HttpMethod.POST, "/api/cards/create").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/cards/create/batch").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PATCH, "/api/cards/*/block").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PATCH, "/api/cards/*/activate").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/cards/all").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/cards/lookup").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/cards/export").hasRole("ADMIN")
+                        .requestMatchers("/api/cards/reencryption/**", "/api/cards/reencryption").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/cards/user/*").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/users**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/users/*").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/api/users/*").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/users/import").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/api/cards/*").hasRole("ADMIN")
 
                         // USER
@@ -61,21 +81,45 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/api/cards/*/request-block").hasRole("USER")
                         .requestMatchers(HttpMethod.POST, "/api/cards/*/deposit").hasRole("USER")
                         .requestMatchers(HttpMethod.POST, "/api/cards/transfer").hasRole("USER")
+                        .requestMatchers(HttpMethod.POST, "/api/cards/transfers/batch").hasRole("USER")
 
                         // ANY с авторизацией
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // после JWT-фильтра: аутентифицированные ограничиваются по пользователю, остальные по IP
+                .addFilterAfter(rateLimitFilter(), JwtAuthFilter.class);
 
         return http.build();
     }
 
+    // Лимиты по группам эндпоинтов, значения переопределяются через app.rate-limit.<имя>.*
+    private RateLimitFilter rateLimitFilter() {
+        List<RateLimitRule> rules = List.of(
+                rateLimitRule("login", HttpMethod.POST, "/api/auth/login", 1, 5),
+                rateLimitRule("register", HttpMethod.POST, "/api/auth/register", 1, 5),
+                rateLimitRule("transfer", HttpMethod.POST, "/api/cards/transfer", 5, 10),
+                rateLimitRule("transfer-batch", HttpMethod.POST, "/api/cards/transfers/batch", 1, 2),
+                rateLimitRule("deposit", HttpMethod.POST, "/api/cards/*/deposit", 5, 10)
+        );
+        int maxKeys = environment.getProperty("app.rate-limit.max-keys-per-rule", Integer.class, 1_000_000);
+        return new RateLimitFilter(rules, maxKeys);
+    }
+
+    private RateLimitRule rateLimitRule(String name, HttpMethod method, String pattern,
+                                        double defaultRatePerSecond, int defaultBurst) {
+        String prefix = "app.rate-limit." + name;
+        return new RateLimitRule(name, method, pattern,
+                environment.getProperty(prefix + ".rate-per-second", Double.class, defaultRatePerSecond),
+                environment.getProperty(prefix + ".burst", Integer.class, defaultBurst));
+    }
+
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 
@@ -84,8 +128,13 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    // BCrypt выполняется на отдельном ограниченном пуле, а не на потоках Tomcat
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${app.password-hashing.pool-size:4}") int poolSize,
+            @Value("${app.password-hashing.queue-capacity:64}") int queueCapacity
+    ) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, meterRegistry);
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.*;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -74,8 +75,14 @@ public class AuthController {
         );
         SecurityContextHolder.getContext().setAuthentication(auth);
 
-        User user = userService.getUserByUsername(dto.getUsername()).orElseThrow();
-        String token = jwtUtil.generateToken(user.getUsername(), user.getRole());
+        // Роль берём из уже загруженного при аутентификации пользователя, без второго запроса в БД
+        String role = auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(a -> a.startsWith("ROLE_"))
+                .map(a -> a.substring("ROLE_".length()))
+                .findFirst()
+                .orElseThrow();
+        String token = jwtUtil.generateToken(auth.getName(), role);
 
         return ResponseEntity.ok(Map.of("token", token));
     }
@@ -1,10 +1,23 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResultDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardIssueBatchRequest;
+import com.example.bankcards.dto.CardLookupRequest;
+import com.example.bankcards.dto.CardTransactionDTO;
 import com.example.bankcards.dto.DepositRequest;
+import com.example.bankcards.dto.ReencryptionStatusDTO;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.service.CardReencryptionJob;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.service.CardIssuanceService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardStatementService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.util.CursorUtil;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,11 +25,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 @Tag(name = "Карты", description = "Управление банковскими картами")
@@ -26,13 +44,29 @@ import java.util.List;
 public class CardController {
 
     private final CardService cardService;
+    private final CardReencryptionJob cardReencryptionJob;
+    private final IdempotencyService idempotencyService;
+    private final CardStatementService cardStatementService;
+    private final CardExportService cardExportService;
+    private final CardIssuanceService cardIssuanceService;
 
-    public CardController(CardService cardService) {
+    public CardController(CardService cardService,
+                          CardReencryptionJob cardReencryptionJob,
+                          IdempotencyService idempotencyService,
+                          CardStatementService cardStatementService,
+                          CardExportService cardExportService,
+                          CardIssuanceService cardIssuanceService) {
         this.cardService = cardService;
+        this.cardReencryptionJob = cardReencryptionJob;
+        this.idempotencyService = idempotencyService;
+        this.cardStatementService = cardStatementService;
+        this.cardExportService = cardExportService;
+        this.cardIssuanceService = cardIssuanceService;
     }
 
     // Создать карту
-    @Operation(summary = "Создать новую карту (ADMIN)")
+    @Operation(summary = "Создать новую карту (ADMIN)",
+            description = "Без cardNumber номер выдаётся из настроенных диапазонов BIN")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Карта создана",
                     content = @Content(mediaType = "application/json",
@@ -43,11 +77,45 @@ public class CardController {
     @PostMapping("/create")
     public ResponseEntity<CardDTO> createCard(
             @RequestParam("userId") Long userId,
-            @RequestParam("cardNumber") String cardNumber
+            @RequestParam(name = "cardNumber", required = false) String cardNumber
     ) {
         return ResponseEntity.ok(cardService.createCard(userId, cardNumber));
     }
 
+    // Выпуск карт пачкой (ADMIN)
+    @Operation(
+            summary = "Выпустить карты пачкой (ADMIN)",
+            description = "Выпускает до " + CardIssueBatchRequest.MAX_CARDS + " карт за один вызов. " +
+                    "Пакет выполняется целиком: при неизвестном пользователе или занятом номере не создаётся ни одна карта. " +
+                    "Карты без cardNumber получают номер из настроенных диапазонов BIN."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Карты созданы",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CardDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации пакета", content = @Content)
+    })
+    @PostMapping("/create/batch")
+    public ResponseEntity<List<CardDTO>> createCards(@Valid @RequestBody CardIssueBatchRequest request) {
+        return ResponseEntity.ok(cardIssuanceService.issueCards(request.getCards()));
+    }
+
+    // Найти карту по номеру (ADMIN)
+    @Operation(summary = "Найти карту по номеру (ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Карта найдена",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CardDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Некорректный номер карты", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена", content = @Content)
+    })
+    @PostMapping("/lookup")
+    public ResponseEntity<CardDTO> lookupCard(@Valid @RequestBody CardLookupRequest request) {
+        return cardService.findByCardNumber(request.getCardNumber())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     // Посмотреть мои карты USER
     @Operation(summary = "Посмотреть свои карты (USER)")
     @ApiResponses(value = {
@@ -81,7 +149,8 @@ public class CardController {
     // Пополнить карту
     @Operation(
             summary = "Пополнение карты (USER)",
-            description = "Позволяет пополнить баланс карты по её ID. Сумма должна быть больше 0."
+            description = "Позволяет пополнить баланс карты по её ID. Сумма должна быть больше 0. " +
+                    "Повтор с тем же заголовком Idempotency-Key вернёт сохранённый ответ без повторного пополнения."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Успешное пополнение",
@@ -90,33 +159,73 @@ public class CardController {
             @ApiResponse(responseCode = "400", description = "Ошибка валидации или бизнес-логики",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Карта не найдена",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "Idempotency-Key уже использован для другого запроса",
                     content = @Content)
     })
     @PostMapping("/{cardId}/deposit")
     public ResponseEntity<CardDTO> deposit(
             @PathVariable("cardId") Long cardId,
-            @Valid @RequestBody DepositRequest request
+            @Valid @RequestBody DepositRequest request,
+            @Parameter(description = "Ключ идемпотентности для безопасных повторов")
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
     ) {
-        return ResponseEntity.ok(cardService.deposit(cardId, request.getAmount()));
+        CardDTO card = idempotencyService.execute(authentication.getName(), idempotencyKey,
+                "deposit:" + cardId + ":" + request.getAmount().toPlainString(), CardDTO.class,
+                () -> cardService.deposit(cardId, request.getAmount()));
+        return ResponseEntity.ok(card);
     }
 
     // Перевести на карту
     @Operation(
             summary = "Перевод между картами (USER)",
             description = "Переводит средства между картами одного пользователя. " +
-                    "Сумма должна быть больше 0 и не превышать баланс отправителя."
+                    "Сумма должна быть больше 0 и не превышать баланс отправителя. " +
+                    "Повтор с тем же заголовком Idempotency-Key вернёт сохранённый ответ без повторного перевода."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Перевод успешно выполнен"),
             @ApiResponse(responseCode = "400", description = "Недостаточно средств или неверные параметры",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Карта не найдена",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "Idempotency-Key уже использован для другого запроса",
                     content = @Content)
     })
     @PostMapping("/transfer")
-    public ResponseEntity<String> transfer(@Valid @RequestBody TransferRequest request) {
-        cardService.transfer(request.getFromCardId(), request.getToCardId(), request.getAmount());
-        return ResponseEntity.ok("Перевод успешно выполнен");
+    public ResponseEntity<String> transfer(
+            @Valid @RequestBody TransferRequest request,
+            @Parameter(description = "Ключ идемпотентности для безопасных повторов")
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        String message = idempotencyService.execute(authentication.getName(), idempotencyKey,
+                "transfer:" + request.getFromCardId() + ":" + request.getToCardId() + ":"
+                        + request.getAmount().toPlainString(), String.class,
+                () -> {
+                    cardService.transfer(request.getFromCardId(), request.getToCardId(), request.getAmount());
+                    return "Перевод успешно выполнен";
+                });
+        return ResponseEntity.ok(message);
+    }
+
+    // Пакет переводов
+    @Operation(
+            summary = "Пакетный перевод между картами (USER)",
+            description = "Выполняет до " + BatchTransferRequest.MAX_TRANSFERS + " переводов в одной транзакции. " +
+                    "ALL_OR_NOTHING отменяет весь пакет при любой ошибке, BEST_EFFORT применяет прошедшие проверки. " +
+                    "Результат возвращается по каждому переводу."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BatchTransferResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации пакета", content = @Content)
+    })
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<List<BatchTransferResultDTO>> transferBatch(@Valid @RequestBody BatchTransferRequest request) {
+        return ResponseEntity.ok(cardService.transferBatch(request.getTransfers(), request.getMode()));
     }
 
     // USER: запрос блoкировки (BLOCK_REQUESTED)
@@ -176,20 +285,54 @@ public class CardController {
     }
 
     // Фильтр пагинация
-    @Operation(summary = "Получить список всех карт с фильтрацией и пагинацией (ADMIN)")
+    @Operation(
+            summary = "Получить список всех карт с фильтрацией и пагинацией (ADMIN)",
+            description = "Keyset-пагинация по id: курсор следующей страницы приходит в заголовке X-Next-Cursor " +
+                    "и передаётся в параметре after. Параметр page > 0 без after — устаревшая OFFSET-пагинация."
+    )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Карты найдены")
+            @ApiResponse(responseCode = "200", description = "Карты найдены"),
+            @ApiResponse(responseCode = "400", description = "Неверный курсор или размер страницы", content = @Content)
     })
     @GetMapping("/all")
     public ResponseEntity<List<CardDTO>> getAllCards(
             @RequestParam(name = "page", defaultValue = "0") int page,
             @RequestParam(name = "size", defaultValue = "10") int size,
-            @RequestParam(name = "status", required = false) String status
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "after", required = false) String after
     ) {
-        return ResponseEntity.ok(cardService.getAllCards(page, size, status));
+        if (after == null && page > 0) {
+            return ResponseEntity.ok(cardService.getAllCards(page, size, status));
+        }
+        Slice<CardDTO> slice = cardService.getAllCardsAfter(after, size, status);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (slice.hasNext()) {
+            List<CardDTO> content = slice.getContent();
+            response.header(CursorUtil.NEXT_CURSOR_HEADER, CursorUtil.encode(content.get(content.size() - 1).getId()));
+        }
+        return response.body(slice.getContent());
     }
 
 
+    // Выгрузка всех карт (ADMIN)
+    @Operation(
+            summary = "Выгрузить все карты потоком NDJSON (ADMIN)",
+            description = "Одна JSON-запись карты на строку, по возрастанию id. Номера маскированы. " +
+                    "Ответ формируется по мере чтения из БД, без загрузки всей таблицы в память."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Выгрузка",
+                    content = @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = CardDTO.class)))
+    })
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportCards() {
+        StreamingResponseBody body = cardExportService::exportAll;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     // Баланс
     @Operation(summary = "Посмотреть баланс карты")
     @ApiResponses(value = {
@@ -200,4 +343,69 @@ public class CardController {
     public ResponseEntity<BigDecimal> getCardBalance(@PathVariable("cardId") Long cardId) {
         return ResponseEntity.ok(cardService.getBalance(cardId));
     }
+
+    // Выписка по карте
+    @Operation(
+            summary = "Выписка по карте (USER — только свои карты, ADMIN — любые)",
+            description = "Отдаёт движения по карте потоком NDJSON (одна JSON-запись на строку) " +
+                    "в порядке времени. Границы from/to включительно, формат yyyy-MM-dd."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Выписка",
+                    content = @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = CardTransactionDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена", content = @Content)
+    })
+    @GetMapping(value = "/{cardId}/statement", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> getStatement(
+            @PathVariable("cardId") Long cardId,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication
+    ) {
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+        cardStatementService.checkAccess(cardId, authentication.getName(), admin);
+        StreamingResponseBody body = out -> cardStatementService.writeStatement(cardId, from, to, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // Перешифрование номеров карт после ротации ключа (ADMIN)
+    @Operation(
+            summary = "Запустить перешифрование номеров карт текущим ключом (ADMIN)",
+            description = "Задание идёт в фоне порциями и продолжает работу с контрольной точки после остановки."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Задание запущено",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ReencryptionStatusDTO.class)))
+    })
+    @PostMapping("/reencryption/start")
+    public ResponseEntity<ReencryptionStatusDTO> startReencryption() {
+        return ResponseEntity.accepted().body(cardReencryptionJob.start());
+    }
+
+    @Operation(summary = "Остановить перешифрование номеров карт (ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Остановка запрошена",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ReencryptionStatusDTO.class)))
+    })
+    @PostMapping("/reencryption/stop")
+    public ResponseEntity<ReencryptionStatusDTO> stopReencryption() {
+        return ResponseEntity.ok(cardReencryptionJob.stop());
+    }
+
+    @Operation(summary = "Прогресс перешифрования номеров карт (ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Состояние задания",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ReencryptionStatusDTO.class)))
+    })
+    @GetMapping("/reencryption")
+    public ResponseEntity<ReencryptionStatusDTO> getReencryptionStatus() {
+        return ResponseEntity.ok(cardReencryptionJob.getStatus());
+    }
 }
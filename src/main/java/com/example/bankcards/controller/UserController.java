@@ -1,8 +1,11 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.dto.UserImportResultDTO;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.service.UserImportService;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.CursorUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,9 +13,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,22 +32,61 @@ import java.util.stream.Collectors;
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService) {
         this.userService = userService;
+        this.userImportService = userImportService;
     }
 
-    // Запрос на всех пользователей
-    @Operation(summary = "Получить список всех пользователей (ADMIN)")
+    // Запрос на всех пользователей, постранично по курсору
+    @Operation(
+            summary = "Получить список пользователей (ADMIN)",
+            description = "Keyset-пагинация по id. Если есть следующая страница, её курсор приходит " +
+                    "в заголовке X-Next-Cursor и передаётся в параметре after."
+    )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Список пользователей получен",
                     content = @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = UserDTO.class)))
+                            schema = @Schema(implementation = UserDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Неверный курсор или размер страницы", content = @Content)
     })
     @GetMapping
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        List<UserDTO> list = userService.getAllUsers().stream().map(this::toDto).collect(Collectors.toList());
-        return ResponseEntity.ok(list);
+    public ResponseEntity<List<UserDTO>> getAllUsers(
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "size", defaultValue = "100") int size
+    ) {
+        Slice<User> slice = userService.getUsersAfter(after, size);
+        List<UserDTO> list = slice.getContent().stream().map(this::toDto).collect(Collectors.toList());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (slice.hasNext()) {
+            response.header(CursorUtil.NEXT_CURSOR_HEADER, CursorUtil.encode(list.get(list.size() - 1).getId()));
+        }
+        return response.body(list);
+    }
+
+    // Массовый импорт: тело читается потоком, отчёт по строкам пишется в ответ по мере обработки порций
+    @Operation(
+            summary = "Импорт пользователей из CSV или NDJSON (ADMIN)",
+            description = "CSV: username,password[,role], заголовок необязателен. NDJSON: по объекту " +
+                    "{\"username\",\"password\",\"role\"} на строку. Ответ — NDJSON с результатом каждой строки: " +
+                    "CREATED, DUPLICATE или INVALID."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Импорт выполнен, отчёт по строкам в теле",
+                    content = @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = UserImportResultDTO.class)))
+    })
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"},
+            produces = "application/x-ndjson")
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        userImportService.importUsers(request.getInputStream(), format, response.getOutputStream());
     }
 
     // Запрос на пользователя по ID
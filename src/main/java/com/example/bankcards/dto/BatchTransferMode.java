@@ -0,0 +1,8 @@
+package com.example.bankcards.dto;
+
+// ALL_OR_NOTHING — при первой же ошибке не применяется ни один перевод пакета;
+// BEST_EFFORT — применяются все переводы, прошедшие проверки
+public enum BatchTransferMode {
+    ALL_OR_NOTHING,
+    BEST_EFFORT
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+
+    public static final int MAX_TRANSFERS = 1000;
+
+    @NotEmpty(message = "Список переводов не должен быть пустым")
+    @Size(max = MAX_TRANSFERS, message = "Не более " + MAX_TRANSFERS + " переводов в одном пакете")
+    private List<@Valid @NotNull TransferRequest> transfers;
+
+    @NotNull(message = "Режим выполнения обязателен")
+    private BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.dto;
+
+import java.math.BigDecimal;
+
+// Результат одного перевода из пакета. status: APPLIED, REJECTED (с причиной в error)
+// или ROLLED_BACK — перевод прошёл проверки, но пакет ALL_OR_NOTHING отменён из-за другой ошибки
+public class BatchTransferResultDTO {
+
+    public static final String APPLIED = "APPLIED";
+    public static final String REJECTED = "REJECTED";
+    public static final String ROLLED_BACK = "ROLLED_BACK";
+
+    private int index;
+    private Long fromCardId;
+    private Long toCardId;
+    private BigDecimal amount;
+    private String status;
+    private String error;
+
+    public BatchTransferResultDTO() {}
+
+    public BatchTransferResultDTO(int index, Long fromCardId, Long toCardId, BigDecimal amount,
+                                  String status, String error) {
+        this.index = index;
+        this.fromCardId = fromCardId;
+        this.toCardId = toCardId;
+        this.amount = amount;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() { return index; }
+    public Long getFromCardId() { return fromCardId; }
+    public Long getToCardId() { return toCardId; }
+    public BigDecimal getAmount() { return amount; }
+    public String getStatus() { return status; }
+    public String getError() { return error; }
+}
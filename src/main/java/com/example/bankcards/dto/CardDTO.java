@@ -1,5 +1,10 @@
 package com.example.bankcards.dto;
 
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.math.BigDecimal;
 
 public class CardDTO {
@@ -12,7 +17,14 @@ public class CardDTO {
 
     public CardDTO() {}
 
-    public CardDTO(Long id, String maskedNumber, String status, BigDecimal balance, Long ownerId, String ownerUsername) {
+    // Конструктор для Jackson: сохранённый ответ восстанавливается при повторе запроса с тем же Idempotency-Key
+    @JsonCreator
+    public CardDTO(@JsonProperty("id") Long id,
+                   @JsonProperty("maskedNumber") String maskedNumber,
+                   @JsonProperty("status") String status,
+                   @JsonProperty("balance") BigDecimal balance,
+                   @JsonProperty("ownerId") Long ownerId,
+                   @JsonProperty("ownerUsername") String ownerUsername) {
         this.id = id;
         this.maskedNumber = maskedNumber;
         this.status = status;
@@ -21,6 +33,12 @@ public class CardDTO {
         this.ownerUsername = ownerUsername;
     }
 
+    // Для JPQL-проекций (select new ...): карта и владелец читаются одним запросом, номер маскируется по last4
+    public CardDTO(Long id, String cardNumberLast4, CardStatus status, BigDecimal balance,
+                   Long ownerId, String ownerUsername) {
+        this(id, Card.mask(cardNumberLast4), status.toString(), balance, ownerId, ownerUsername);
+    }
+
     public Long getId() { return id; }
     public String getMaskedNumber() { return maskedNumber; }
     public String getStatus() { return status; }
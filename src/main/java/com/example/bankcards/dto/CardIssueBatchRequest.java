@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CardIssueBatchRequest {
+
+    public static final int MAX_CARDS = 5000;
+
+    @NotEmpty(message = "Список карт не должен быть пустым")
+    @Size(max = MAX_CARDS, message = "Не более " + MAX_CARDS + " карт в одном пакете")
+    private List<@Valid @NotNull CardIssueRequest> cards;
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+@Data
+public class CardIssueRequest {
+    @NotNull(message = "ID пользователя обязателен")
+    private Long userId;
+
+    // Без номера карта получает номер из CardNumberAllocator
+    @Pattern(regexp = "\\d{13,19}", message = "Номер карты — от 13 до 19 цифр")
+    private String cardNumber;
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+// Номер карты передаётся в теле запроса, а не в URL: строка запроса попадает в журналы доступа и прокси
+@Data
+public class CardLookupRequest {
+
+    @NotNull(message = "Номер карты обязателен")
+    @Pattern(regexp = "\\d{13,19}", message = "Номер карты — от 13 до 19 цифр")
+    private String cardNumber;
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class CardTransactionDTO {
+    private Long id;
+    private Long cardId;
+    private String type;
+    private BigDecimal amount;
+    private Long counterpartyCardId;
+    private LocalDateTime createdAt;
+
+    public CardTransactionDTO() {}
+
+    public CardTransactionDTO(Long id, Long cardId, String type, BigDecimal amount,
+                              Long counterpartyCardId, LocalDateTime createdAt) {
+        this.id = id;
+        this.cardId = cardId;
+        this.type = type;
+        this.amount = amount;
+        this.counterpartyCardId = counterpartyCardId;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getCardId() { return cardId; }
+    public String getType() { return type; }
+    public BigDecimal getAmount() { return amount; }
+    public Long getCounterpartyCardId() { return counterpartyCardId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.dto;
+
+import java.time.Instant;
+
+public class ReencryptionStatusDTO {
+    private int targetKeyVersion;
+    private boolean running;
+    private long processed;
+    private long remainingAtStart;
+    private long lastId;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String error;
+
+    public ReencryptionStatusDTO() {}
+
+    public ReencryptionStatusDTO(int targetKeyVersion, boolean running, long processed, long remainingAtStart,
+                                 long lastId, Instant startedAt, Instant finishedAt, String error) {
+        this.targetKeyVersion = targetKeyVersion;
+        this.running = running;
+        this.processed = processed;
+        this.remainingAtStart = remainingAtStart;
+        this.lastId = lastId;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    public int getTargetKeyVersion() { return targetKeyVersion; }
+    public boolean isRunning() { return running; }
+    public long getProcessed() { return processed; }
+    public long getRemainingAtStart() { return remainingAtStart; }
+    public long getLastId() { return lastId; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public String getError() { return error; }
+}
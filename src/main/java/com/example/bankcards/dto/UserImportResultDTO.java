@@ -0,0 +1,29 @@
+package com.example.bankcards.dto;
+
+// Результат одной строки импорта пользователей. status: CREATED (с id), DUPLICATE — username уже занят
+// или повторяется в файле, INVALID — строку не удалось разобрать или она не прошла проверку (причина в error)
+public class UserImportResultDTO {
+
+    public static final String CREATED = "CREATED";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String INVALID = "INVALID";
+
+    private long line;
+    private String username;
+    private String status;
+    private String error;
+
+    public UserImportResultDTO() {}
+
+    public UserImportResultDTO(long line, String username, String status, String error) {
+        this.line = line;
+        this.username = username;
+        this.status = status;
+        this.error = error;
+    }
+
+    public long getLine() { return line; }
+    public String getUsername() { return username; }
+    public String getStatus() { return status; }
+    public String getError() { return error; }
+}
@@ -2,20 +2,42 @@ package com.example.bankcards.entity;
 
 import com.example.bankcards.util.EncryptionUtil;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+// DynamicUpdate: UPDATE пишет только изменённые колонки и не затирает номер, перешифрованный фоновым заданием.
+// Регион cards кэша второго уровня сбрасывается нативными UPDATE из CardRepository (query space "cards")
+// и JDBC-записью CardReencryptionJob; его размер и время жизни настраиваются в application.conf
 @Entity
 @Table(name = "cards")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "cards")
 public class Card {
 
+    // Id из последовательности с allocationSize 50, чтобы выпуск карт пачкой шёл батчами INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_id_seq")
+    @SequenceGenerator(name = "cards_id_seq", sequenceName = "cards_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "card_number_encrypted", nullable = false, unique = true)
     private String cardNumberEncrypted;
 
+    @Column(name = "card_number_last4", length = 4)
+    private String cardNumberLast4;
+
+    @Column(name = "card_number_hash", length = 64, unique = true)
+    private String cardNumberHash;
+
+    // Версия ключа AES, которым зашифрован номер
+    @Column(name = "key_version", nullable = false)
+    private int keyVersion = 1;
+
     @Column(name = "expiration_date", nullable = false)
     private LocalDate expirationDate;
 
@@ -26,6 +48,11 @@ public class Card {
     @Column(nullable = false)
     private BigDecimal balance;
 
+    // Оптимистическая блокировка: UPDATE проверяет и увеличивает версию
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User owner;
@@ -53,6 +80,8 @@ public class Card {
             throw new IllegalStateException("EncryptionUtil not set");
         }
         this.cardNumberEncrypted = encryptionUtil.encrypt(plain);
+        this.keyVersion = encryptionUtil.getCurrentKeyVersion();
+        this.cardNumberLast4 = lastFour(plain);
     }
 
     public Long getId() {
@@ -67,10 +96,42 @@ public class Card {
         this.cardNumberEncrypted = cardNumberEncrypted;
     }
 
-    public String getMaskedNumber(EncryptionUtil encryptionUtil) {
-        if (cardNumberEncrypted == null) return null;
-        String decrypted = encryptionUtil.decrypt(cardNumberEncrypted);
-        return "**** **** **** " + decrypted.substring(decrypted.length() - 4);
+    public int getKeyVersion() {
+        return keyVersion;
+    }
+
+    public void setKeyVersion(int keyVersion) {
+        this.keyVersion = keyVersion;
+    }
+
+    public String getCardNumberHash() {
+        return cardNumberHash;
+    }
+
+    public void setCardNumberHash(String cardNumberHash) {
+        this.cardNumberHash = cardNumberHash;
+    }
+
+    public String getCardNumberLast4() {
+        return cardNumberLast4;
+    }
+
+    public void setCardNumberLast4(String cardNumberLast4) {
+        this.cardNumberLast4 = cardNumberLast4;
+    }
+
+    // Маска строится из сохранённых последних цифр, расшифровка не нужна
+    public String getMaskedNumber() {
+        return mask(cardNumberLast4);
+    }
+
+    public static String mask(String last4) {
+        if (last4 == null) return null;
+        return "**** **** **** " + last4;
+    }
+
+    public static String lastFour(String plain) {
+        return plain.substring(plain.length() - 4);
     }
 
     public LocalDate getExpirationDate() {
@@ -97,6 +158,10 @@ public class Card {
         this.balance = balance;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public User getOwner() {
         return owner;
     }
@@ -0,0 +1,53 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Запись журнала движений по карте. amount со знаком: списание отрицательное.
+// Id из последовательности с allocationSize 50: Hibernate выдаёт id без обращения к БД и вставляет записи батчами
+@Entity
+@Table(name = "card_transactions")
+public class CardTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_transactions_seq")
+    @SequenceGenerator(name = "card_transactions_seq", sequenceName = "card_transactions_seq", allocationSize = 50)
+    private Long id;
+
+    // Без связи с Card: запись журнала не должна подгружать карту
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private CardTransactionType type;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "counterparty_card_id")
+    private Long counterpartyCardId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public CardTransaction() {}
+
+    public CardTransaction(Long cardId, CardTransactionType type, BigDecimal amount,
+                           Long counterpartyCardId, LocalDateTime createdAt) {
+        this.cardId = cardId;
+        this.type = type;
+        this.amount = amount;
+        this.counterpartyCardId = counterpartyCardId;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getCardId() { return cardId; }
+    public CardTransactionType getType() { return type; }
+    public BigDecimal getAmount() { return amount; }
+    public Long getCounterpartyCardId() { return counterpartyCardId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.entity;
+
+public enum CardTransactionType {
+    OPENING,
+    DEPOSIT,
+    TRANSFER_IN,
+    TRANSFER_OUT
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+// Idempotency-Key уже использован для другого запроса или запрос с ним ещё выполняется (HTTP 409)
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+// Ресурс временно перегружен, запрос отклонён без выполнения (HTTP 503)
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
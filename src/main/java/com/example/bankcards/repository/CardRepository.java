@@ -1,16 +1,128 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CardRepository extends JpaRepository<Card, Long> {
     List<Card> findByOwnerId(Long ownerId);
     List<Card> findByOwner(User owner);
     Page<Card> findByStatus(CardStatus status, Pageable pageable);
+
+    // Списки карт сразу в CardDTO: карта и владелец одним SELECT с JOIN, без отдельного запроса users на каждую карту
+    String CARD_DTO = "select new com.example.bankcards.dto.CardDTO(" +
+            "c.id, c.cardNumberLast4, c.status, c.balance, o.id, o.username) from Card c join c.owner o ";
+
+    @Query(CARD_DTO + "where o.id = :ownerId order by c.id")
+    List<CardDTO> findDtosByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Query(CARD_DTO + "where c.id = :id")
+    Optional<CardDTO> findDtoById(@Param("id") Long id);
+
+    @Query(CARD_DTO + "where o.username = :username order by c.id")
+    List<CardDTO> findDtosByOwnerUsername(@Param("username") String username);
+
+    @Query(CARD_DTO + "order by c.id")
+    List<CardDTO> findAllDtos();
+
+    // List вместо Page: страница без отдельного count-запроса
+    @Query(CARD_DTO + "order by c.id")
+    List<CardDTO> findDtoPage(Pageable pageable);
+
+    @Query(CARD_DTO + "where c.status = :status order by c.id")
+    List<CardDTO> findDtoPageByStatus(@Param("status") CardStatus status, Pageable pageable);
+
+    // Выгрузка всех карт курсором: строки приходят порциями по fetch size. Проекция в DTO не создаёт
+    // управляемых сущностей, поэтому контекст персистентности не растёт и чистить его по ходу не нужно.
+    // Потребитель обязан закрыть Stream и читать его внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(CARD_DTO + "order by c.id")
+    Stream<CardDTO> streamAllDtos();
+
+    // Keyset-страницы: стоимость не зависит от глубины; Slice читает size + 1 строк вместо COUNT(*)
+    @Query(CARD_DTO + "where c.id > :afterId order by c.id")
+    Slice<CardDTO> findDtoSliceAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query(CARD_DTO + "where c.status = :status and c.id > :afterId order by c.id")
+    Slice<CardDTO> findDtoSliceByStatusAfter(@Param("status") CardStatus status, @Param("afterId") long afterId,
+                                             Pageable pageable);
+
+    // SELECT ... FOR UPDATE для пессимистичной стратегии перевода
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    // Пакетный перевод: все карты одним SELECT ... FOR UPDATE, строки блокируются по возрастанию id,
+    // поэтому пакеты с пересекающимися картами не взаимоблокируются
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Пополнение одним условным UPDATE: без чтения перед записью и без потерянных обновлений.
+    // 0 строк — карты нет или она не ACTIVE.
+    // Query space "cards": Hibernate сбрасывает только регион карт, а не весь кэш второго уровня
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cards"))
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE cards SET balance = balance + :amount, version = version + 1 " +
+            "WHERE id = :id AND status = 'ACTIVE'", nativeQuery = true)
+    int depositIfActive(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    // Перевод одним UPDATE по двум строкам. Все проверки в WHERE: обе карты ACTIVE,
+    // на карте-источнике хватает средств, карты одного владельца. Успех — ровно 2 строки.
+    // Один UPDATE по нескольким строкам не задаёт порядок блокировок, поэтому строки заранее
+    // блокирует подзапрос ORDER BY id FOR UPDATE — встречные переводы не взаимоблокируются
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cards"))
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE cards SET " +
+            "balance = CASE WHEN id = :fromId THEN balance - :amount ELSE balance + :amount END, " +
+            "version = version + 1 " +
+            "WHERE id IN (SELECT id FROM cards WHERE id IN (:fromId, :toId) ORDER BY id FOR UPDATE) " +
+            "AND status = 'ACTIVE' AND (id <> :fromId OR balance >= :amount) " +
+            "AND EXISTS (SELECT 1 FROM cards f JOIN cards t ON t.user_id = f.user_id " +
+            "WHERE f.id = :fromId AND t.id = :toId)", nativeQuery = true)
+    int transferIfAllowed(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("amount") BigDecimal amount);
+
+    // Перевод просроченных карт диапазона [fromId, toId) в EXPIRED одним UPDATE; версия увеличивается,
+    // чтобы оптимистическая стратегия перевода заметила изменение
+    @Modifying
+    @Query("update Card c set c.status = :expired, c.version = c.version + 1 " +
+            "where c.id >= :fromId and c.id < :toId and c.expirationDate < :today and c.status <> :expired")
+    int expireRange(@Param("fromId") long fromId, @Param("toId") long toId,
+                    @Param("today") LocalDate today, @Param("expired") CardStatus expired);
+
+    @Query("select coalesce(min(c.id), 0) from Card c")
+    long findMinId();
+
+    @Query("select coalesce(max(c.id), -1) from Card c")
+    long findMaxId();
+
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
+    boolean existsByCardNumberHash(String cardNumberHash);
+
+    // Проверка дубликатов для пакетного выпуска: один запрос по индексу HMAC на весь пакет
+    @Query("select c.cardNumberHash from Card c where c.cardNumberHash in :hashes")
+    List<String> findExistingCardNumberHashes(@Param("hashes") Collection<String> hashes);
 }
@@ -0,0 +1,7 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+}
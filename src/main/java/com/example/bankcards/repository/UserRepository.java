@@ -1,10 +1,26 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+    // Кэш запроса хранит id, сам пользователь берётся из региона users. Результат сбрасывается при любой
+    // записи в users через Hibernate; вставки в обход Hibernate должны сбросить регион сами
+    String USERS_BY_USERNAME_REGION = "users-by-username";
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = USERS_BY_USERNAME_REGION)
+    })
     Optional<User> findByUsername(String username);
+
+    // Keyset-страница по первичному ключу, без COUNT(*)
+    Slice<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
 }
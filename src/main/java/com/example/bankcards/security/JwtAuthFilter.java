@@ -4,7 +4,11 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -12,16 +16,27 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthFilter.class);
+
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationStore revocationStore;
+    // true — пользователь строится из claims токена без запроса в БД
+    private final boolean statelessPrincipal;
 
-    public JwtAuthFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
+    public JwtAuthFilter(JwtUtil jwtUtil,
+                         CustomUserDetailsService userDetailsService,
+                         TokenRevocationStore revocationStore,
+                         @Value("${app.jwt-stateless-principal:false}") boolean statelessPrincipal) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.revocationStore = revocationStore;
+        this.statelessPrincipal = statelessPrincipal;
     }
 
     @Override
@@ -31,22 +46,29 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         String authHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String token = null;
+        JwtClaims claims = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
+            String token = authHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(token);
+                // Подпись и срок проверяются один раз, результат кэшируется в JwtUtil
+                claims = jwtUtil.verify(token);
             } catch (Exception e) {
-                System.out.println("Invalid JWT: " + e.getMessage());
+                log.debug("Invalid JWT: {}", e.getMessage());
             }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (claims != null && revocationStore.isRevoked(claims)) {
+            log.debug("Revoked JWT for user: {}", claims.getUsername());
+            claims = null;
+        }
+
+        if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = statelessPrincipal
+                    ? fromClaims(claims)
+                    : userDetailsService.loadUserByUsername(claims.getUsername());
 
-            if (jwtUtil.validateToken(token, userDetails.getUsername())) {
+            if (userDetails.getUsername().equals(claims.getUsername())) {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
@@ -58,4 +80,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         chain.doFilter(request, response);
     }
+
+    // Роль уже подписана в токене (JwtUtil.generateToken), пароль для аутентифицированного запроса не нужен
+    private UserDetails fromClaims(JwtClaims claims) {
+        List<SimpleGrantedAuthority> authorities = claims.getRole() == null
+                ? List.of()
+                : List.of(new SimpleGrantedAuthority("ROLE_" + claims.getRole()));
+        return new User(claims.getUsername(), "", authorities);
+    }
 }
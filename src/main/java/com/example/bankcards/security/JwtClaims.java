@@ -0,0 +1,28 @@
+package com.example.bankcards.security;
+
+import java.time.Instant;
+
+// Неизменяемый результат проверки JWT: подпись и срок уже проверены
+public final class JwtClaims {
+
+    private final String username;
+    private final String role;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    public JwtClaims(String username, String role, Instant issuedAt, Instant expiresAt) {
+        this.username = username;
+        this.role = role;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUsername() { return username; }
+    public String getRole() { return role; }
+    public Instant getIssuedAt() { return issuedAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+
+    public boolean isExpired() {
+        return !expiresAt.isAfter(Instant.now());
+    }
+}
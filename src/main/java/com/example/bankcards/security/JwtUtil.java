@@ -1,25 +1,59 @@
 package com.example.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
 
 @Component
 public class JwtUtil {
 
     private final Key key;
     private final long expirationTime;
+    private final JwtParser parser;
+
+    // Уже проверенные токены: ключ — SHA-256 токена, запись живёт до exp токена
+    private final Cache<String, JwtClaims> verifiedTokens;
 
     public JwtUtil(
             @Value("${app.jwt-secret}") String secret,
-            @Value("${app.jwt-expiration-ms:900000}") long expirationTime // 15 мин по умолчанию
+            @Value("${app.jwt-expiration-ms:900000}") long expirationTime, // 15 мин по умолчанию
+            @Value("${app.jwt-cache-size:10000}") long cacheSize
     ) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
         this.expirationTime = expirationTime;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, JwtClaims>() {
+                    @Override
+                    public long expireAfterCreate(String hash, JwtClaims claims, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), claims.getExpiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
 
@@ -34,28 +68,56 @@ public class JwtUtil {
                 .compact();
     }
 
+    // Проверить подпись и срок один раз; повторные запросы с тем же токеном берут результат из кэша.
+    // Невалидный токен бросает JwtException и в кэш не попадает
+    public JwtClaims verify(String token) {
+        JwtClaims claims = verifiedTokens.get(sha256(token), hash -> parse(token));
+        if (claims.isExpired()) {
+            throw new ExpiredJwtException(null, null, "JWT expired at " + claims.getExpiresAt());
+        }
+        return claims;
+    }
 
     // Извлечь username
     public String extractUsername(String token) {
-        return parseClaims(token).getBody().getSubject();
+        return verify(token).getUsername();
     }
 
     // Извлечь роль
     public String extractRole(String token) {
-        return (String) parseClaims(token).getBody().get("role");
+        return verify(token).getRole();
     }
 
     // Проверить, истёк ли токен
     public boolean isTokenExpired(String token) {
-        return parseClaims(token).getBody().getExpiration().before(new Date());
+        return verify(token).isExpired();
     }
 
     // Проверка токена
     public boolean validateToken(String token, String username) {
-        return extractUsername(token).equals(username) && !isTokenExpired(token);
+        JwtClaims claims = verify(token);
+        return claims.getUsername().equals(username) && !claims.isExpired();
+    }
+
+    private JwtClaims parse(String token) {
+        Claims body = parser.parseClaimsJws(token).getBody();
+        if (body.getExpiration() == null) {
+            throw new MalformedJwtException("JWT without expiration");
+        }
+        return new JwtClaims(
+                body.getSubject(),
+                body.get("role", String.class),
+                body.getIssuedAt() == null ? null : body.getIssuedAt().toInstant(),
+                body.getExpiration().toInstant()
+        );
     }
 
-    private Jws<Claims> parseClaims(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -0,0 +1,146 @@
+package com.example.bankcards.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Ограничение частоты запросов по пользователю (или IP для анонимных) для дорогих эндпоинтов.
+// Каждый "бакет" — один AtomicLong с теоретическим временем следующего запроса (GCRA):
+// проверка — одно CAS-обновление без блокировок и без аллокаций для уже известного ключа.
+// Бакеты, полностью восстановившиеся за время простоя, периодически удаляются
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final long SWEEP_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final List<Limiter> limiters;
+    private final int maxKeysPerRule;
+    private final LongSupplier clock;
+    private final AtomicLong nextSweep;
+
+    public RateLimitFilter(List<RateLimitRule> rules, int maxKeysPerRule) {
+        this(rules, maxKeysPerRule, System::nanoTime);
+    }
+
+    public RateLimitFilter(List<RateLimitRule> rules, int maxKeysPerRule, LongSupplier clock) {
+        this.limiters = rules.stream().map(Limiter::new).toList();
+        this.maxKeysPerRule = maxKeysPerRule;
+        this.clock = clock;
+        this.nextSweep = new AtomicLong(clock.getAsLong() + SWEEP_INTERVAL_NANOS);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Limiter limiter = find(request);
+        if (limiter == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long now = clock.getAsLong();
+        sweepIfDue(now);
+
+        long waitNanos = limiter.acquire(key(request), now, maxKeysPerRule);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"error\":\"Слишком много запросов, повторите позже\"}");
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    // Количество отслеживаемых ключей по всем правилам
+    public int trackedKeys() {
+        return limiters.stream().mapToInt(l -> l.buckets.size()).sum();
+    }
+
+    private Limiter find(HttpServletRequest request) {
+        for (Limiter limiter : limiters) {
+            if (limiter.rule.getMatcher().matches(request)) {
+                return limiter;
+            }
+        }
+        return null;
+    }
+
+    private String key(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated()) {
+            return auth.getName();
+        }
+        return request.getRemoteAddr();
+    }
+
+    // Уборку выполняет тот поток, который первым выиграл CAS по времени следующей уборки
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due >= 0 && nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            for (Limiter limiter : limiters) {
+                limiter.sweep(now);
+            }
+        }
+    }
+
+    private static final class Limiter {
+        private final RateLimitRule rule;
+        private final long emissionIntervalNanos;
+        private final long burstNanos;
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        private Limiter(RateLimitRule rule) {
+            this.rule = rule;
+            this.emissionIntervalNanos = (long) (1_000_000_000L / rule.getRatePerSecond());
+            this.burstNanos = emissionIntervalNanos * rule.getBurst();
+        }
+
+        // 0 — запрос разрешён, иначе сколько наносекунд подождать
+        private long acquire(String key, long now, int maxKeys) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    return emissionIntervalNanos;
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            while (true) {
+                long tat = bucket.get();
+                long newTat = Math.max(tat, now) + emissionIntervalNanos;
+                long overflow = newTat - now - burstNanos;
+                if (overflow > 0) {
+                    return overflow;
+                }
+                if (bucket.compareAndSet(tat, newTat)) {
+                    return 0;
+                }
+            }
+        }
+
+        // Бакет, у которого теоретическое время уже в прошлом, эквивалентен новому — его можно удалить
+        private void sweep(long now) {
+            buckets.forEach((key, bucket) -> {
+                if (bucket.get() - now <= 0) {
+                    buckets.remove(key, bucket);
+                }
+            });
+        }
+    }
+}
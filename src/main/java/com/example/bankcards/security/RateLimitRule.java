@@ -0,0 +1,28 @@
+package com.example.bankcards.security;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+// Лимит для группы эндпоинтов: ratePerSecond запросов в секунду в среднем, не больше burst подряд
+public final class RateLimitRule {
+
+    private final String name;
+    private final AntPathRequestMatcher matcher;
+    private final double ratePerSecond;
+    private final int burst;
+
+    public RateLimitRule(String name, HttpMethod method, String pattern, double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Неверные параметры лимита " + name);
+        }
+        this.name = name;
+        this.matcher = new AntPathRequestMatcher(pattern, method.name());
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+    }
+
+    public String getName() { return name; }
+    public AntPathRequestMatcher getMatcher() { return matcher; }
+    public double getRatePerSecond() { return ratePerSecond; }
+    public int getBurst() { return burst; }
+}
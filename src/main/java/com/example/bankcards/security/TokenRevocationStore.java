@@ -0,0 +1,86 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+// Отзыв токенов: для пользователя хранится момент "not before", токены, выпущенные не позже него, отклоняются.
+// Источник — таблица token_revocations, общая для узлов; проверка идёт по копии в памяти,
+// которая перечитывается раз в app.jwt-revocation-refresh-ms. Отзыв на другом узле действует
+// с задержкой не больше этого интервала. Запись живёт не дольше самого долгого токена
+@Component
+public class TokenRevocationStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationStore.class);
+
+    private static final String UPDATE =
+            "UPDATE token_revocations SET not_before = GREATEST(not_before, ?) WHERE username = ?";
+    private static final String INSERT =
+            "INSERT INTO token_revocations (username, not_before) VALUES (?, ?)";
+    private static final String SELECT_ACTIVE =
+            "SELECT username, not_before FROM token_revocations WHERE not_before >= ?";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM token_revocations WHERE not_before < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration tokenLifetime;
+    private final Cache<String, Instant> notBefore;
+
+    public TokenRevocationStore(JdbcTemplate jdbcTemplate,
+                                @Value("${app.jwt-expiration-ms:900000}") long expirationTime) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tokenLifetime = Duration.ofMillis(expirationTime);
+        this.notBefore = Caffeine.newBuilder()
+                .expireAfterWrite(tokenLifetime)
+                .build();
+    }
+
+    // Отозвать все ранее выданные токены пользователя. iat в JWT хранится с точностью до секунды,
+    // поэтому момент отзыва округляем вверх: токен, выпущенный в ту же секунду до отзыва, тоже отклоняется.
+    // Запись в таблицу идёт в транзакции вызывающего кода, например вместе с удалением пользователя
+    public void revokeAll(String username) {
+        Instant revokedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        Timestamp at = Timestamp.from(revokedAt);
+        if (jdbcTemplate.update(UPDATE, at, username) == 0) {
+            jdbcTemplate.update(INSERT, username, at);
+        }
+        remember(username, revokedAt);
+    }
+
+    public boolean isRevoked(JwtClaims claims) {
+        Instant revokedAt = notBefore.getIfPresent(claims.getUsername());
+        if (revokedAt == null) {
+            return false;
+        }
+        return claims.getIssuedAt() == null || !claims.getIssuedAt().isAfter(revokedAt);
+    }
+
+    // Перечитывает отзывы других узлов; записи старше самого долгого токена уже ничего не отклоняют и удаляются
+    @Scheduled(fixedDelayString = "${app.jwt-revocation-refresh-ms:5000}")
+    public void refresh() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(tokenLifetime));
+        try {
+            jdbcTemplate.query(SELECT_ACTIVE, rs -> {
+                remember(rs.getString("username"), rs.getTimestamp("not_before").toInstant());
+            }, cutoff);
+            jdbcTemplate.update(DELETE_EXPIRED, cutoff);
+        } catch (DataAccessException e) {
+            log.warn("Token revocation refresh failed, using the previous snapshot", e);
+        }
+    }
+
+    private void remember(String username, Instant revokedAt) {
+        notBefore.asMap().merge(username, revokedAt, (current, loaded) -> loaded.isAfter(current) ? loaded : current);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+// Перевод одним условным UPDATE по двум строкам (CardRepository.transferIfAllowed).
+// Успешный перевод — один UPDATE и записи журнала; карты читаются только при отказе, чтобы выбрать текст ошибки
+@Component
+@ConditionalOnProperty(name = "app.transfer.strategy", havingValue = "atomic", matchIfMissing = true)
+public class AtomicSqlTransferStrategy implements TransferStrategy {
+
+    private final CardRepository cardRepository;
+    private final CardLedger cardLedger;
+
+    public AtomicSqlTransferStrategy(CardRepository cardRepository, CardLedger cardLedger) {
+        this.cardRepository = cardRepository;
+        this.cardLedger = cardLedger;
+    }
+
+    @Override
+    @Transactional
+    public void transfer(Long fromCardId, Long toCardId, BigDecimal amount) {
+        int updated = cardRepository.transferIfAllowed(fromCardId, toCardId, amount);
+        if (updated != 2) {
+            // Исключение откатывает транзакцию, в том числе частично применённое изменение одной строки
+            throw new RuntimeException(rejectionReason(fromCardId, toCardId, amount));
+        }
+        cardLedger.recordTransfer(fromCardId, toCardId, amount);
+    }
+
+    private String rejectionReason(Long fromCardId, Long toCardId, BigDecimal amount) {
+        Card from = cardRepository.findById(fromCardId)
+                .orElseThrow(() -> new RuntimeException("Source card not found"));
+        Card to = cardRepository.findById(toCardId)
+                .orElseThrow(() -> new RuntimeException("Target card not found"));
+
+        if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
+            return "Both cards must be ACTIVE for transfer";
+        }
+        if (!from.getOwner().getId().equals(to.getOwner().getId())) {
+            return "You can only transfer between your own cards";
+        }
+        if (from.getBalance().compareTo(amount) < 0) {
+            return "Not enough funds";
+        }
+        return "Transfer was rejected, try again";
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// Ночной перевод просроченных карт в EXPIRED. Один UPDATE на диапазон id в своей короткой транзакции:
+// карты в память не загружаются, блокировки строк держатся миллисекунды.
+// В кластере выполняет только узел, взявший аренду "card-expiration"; аренда продлевается после каждой порции.
+// После запуска аренда не снимается, а дата по часам БД записывается как завершённая:
+// узел, у которого cron сработал позже, видит, что сегодня задание уже выполнено.
+// Cron срабатывает каждые 15 минут: первый запуск после полуночи делает работу, следующие только проверяют
+// отметку. Если запуск остановился, потеряв аренду, или узел упал, задание доделает следующий запуск
+@Component
+public class CardExpirationJob {
+
+    static final String LEASE_NAME = "card-expiration";
+
+    private static final Logger log = LoggerFactory.getLogger(CardExpirationJob.class);
+
+    private final CardRepository cardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final long chunkSize;
+    private final Duration leaseDuration;
+
+    private final Counter expiredRows;
+    private final Timer chunkTimer;
+    private volatile double lastRunRowsPerSecond;
+    private volatile boolean lastRunFinished;
+
+    public CardExpirationJob(CardRepository cardRepository,
+                             TransactionTemplate transactionTemplate,
+                             JobLeaseService jobLeaseService,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.expiration.chunk-size:10000}") long chunkSize,
+                             @Value("${app.expiration.lease-seconds:300}") long leaseSeconds) {
+        this.cardRepository = cardRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jobLeaseService = jobLeaseService;
+        this.chunkSize = chunkSize;
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+        this.expiredRows = Counter.builder("card.expiration.rows")
+                .description("Карты, переведённые в EXPIRED; rate() — строк в секунду")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("card.expiration.chunk.duration")
+                .register(meterRegistry);
+        Gauge.builder("card.expiration.last.rows.per.second", this, job -> job.lastRunRowsPerSecond)
+                .description("Средняя скорость последнего запуска")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "0 */15 * * * ?") // каждые 15 минут; за день задание выполняется один раз
+    public void scheduledRun() {
+        if (!jobLeaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.info("Card expiration skipped: lease is held by another node");
+            return;
+        }
+        LocalDate today = jobLeaseService.currentDate();
+        if (jobLeaseService.isCompleted(LEASE_NAME, today)) {
+            log.info("Card expiration skipped: already completed for {}", today);
+            return;
+        }
+        run(today);
+        if (lastRunFinished) {
+            jobLeaseService.markCompleted(LEASE_NAME, today);
+        } else {
+            log.info("Card expiration for {} not completed, the next scheduled run will resume it", today);
+        }
+    }
+
+    // Возвращает количество карт, переведённых в EXPIRED
+    public long run(LocalDate today) {
+        long minId = cardRepository.findMinId();
+        long maxId = cardRepository.findMaxId();
+        long started = System.nanoTime();
+        long total = 0;
+        boolean finished = true;
+
+        for (long fromId = minId; fromId <= maxId; fromId += chunkSize) {
+            long chunkFrom = fromId;
+            long chunkStarted = System.nanoTime();
+            Integer updated = transactionTemplate.execute(status -> cardRepository.expireRange(
+                    chunkFrom, chunkFrom + chunkSize, today, CardStatus.EXPIRED));
+            chunkTimer.record(System.nanoTime() - chunkStarted, TimeUnit.NANOSECONDS);
+            if (updated != null && updated > 0) {
+                expiredRows.increment(updated);
+                total += updated;
+            }
+            // Аренду потеряли (например, долгая пауза GC) — останавливаемся; оставшиеся диапазоны обработает
+            // следующий запуск по расписанию на узле, который будет держать аренду
+            if (!jobLeaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+                log.warn("Card expiration stopped at id {}: lease lost", chunkFrom + chunkSize);
+                finished = false;
+                break;
+            }
+        }
+
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+        lastRunRowsPerSecond = total / seconds;
+        lastRunFinished = finished;
+        log.info("Card expiration finished: {} cards expired in {} s ({} rows/s)",
+                total, String.format("%.1f", seconds), Math.round(lastRunRowsPerSecond));
+        return total;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.repository.CardRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+// Выгрузка всей базы карт потоком NDJSON для отчётных заданий. Строка читается из курсора,
+// маскируется в запросе (CardDTO по last4), сериализуется и сразу уходит в ответ — память не зависит от размера таблицы
+@Service
+public class CardExportService {
+
+    private final CardRepository cardRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter writer;
+
+    public CardExportService(CardRepository cardRepository,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper) {
+        this.cardRepository = cardRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writer = objectMapper.writerFor(CardDTO.class);
+    }
+
+    // Возвращает количество выгруженных карт
+    public long exportAll(OutputStream out) {
+        Long count = readOnlyTransaction.execute(status -> {
+            long written = 0;
+            try (Stream<CardDTO> cards = cardRepository.streamAllDtos()) {
+                for (CardDTO card : (Iterable<CardDTO>) cards::iterator) {
+                    out.write(writer.writeValueAsBytes(card));
+                    out.write('\n');
+                    written++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return written;
+        });
+        return count == null ? 0 : count;
+    }
+}
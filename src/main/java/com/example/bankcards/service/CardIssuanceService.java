@@ -0,0 +1,156 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardIssueRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Выпуск карт пачкой (перевыпуск, онбординг). Пакет проверяется целиком до записи: владельцы одним SELECT,
+// дубликаты номеров одним запросом по HMAC-индексу. Номера шифруются по одному разу, частями параллельно,
+// а карты с id из последовательности вставляются JDBC-батчами по hibernate.jdbc.batch_size
+@Service
+public class CardIssuanceService {
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final BlindIndexUtil blindIndexUtil;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final int parallelism;
+    private final ExecutorService encryptionPool;
+
+    public CardIssuanceService(CardRepository cardRepository,
+                               UserRepository userRepository,
+                               EncryptionUtil encryptionUtil,
+                               BlindIndexUtil blindIndexUtil,
+                               CardNumberAllocator cardNumberAllocator,
+                               @Value("${app.card-issuance.encryption-parallelism:4}") int parallelism) {
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.blindIndexUtil = blindIndexUtil;
+        this.cardNumberAllocator = cardNumberAllocator;
+        this.parallelism = parallelism;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.encryptionPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "card-issue-encrypt-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Всё или ничего: при неизвестном владельце или занятом номере не выпускается ни одна карта
+    @Transactional
+    public List<CardDTO> issueCards(List<CardIssueRequest> requests) {
+        Set<Long> userIds = requests.stream().map(CardIssueRequest::getUserId).collect(Collectors.toSet());
+        Map<Long, User> owners = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        for (Long userId : userIds) {
+            if (!owners.containsKey(userId)) {
+                throw new RuntimeException("User not found: " + userId);
+            }
+        }
+
+        // Номера из запроса проверяются одним запросом; выданные аллокатором уже проверены
+        List<String> numbers = new ArrayList<>(requests.size());
+        List<String> hashes = new ArrayList<>(requests.size());
+        List<String> clientHashes = new ArrayList<>();
+        int toAllocate = (int) requests.stream().filter(r -> r.getCardNumber() == null).count();
+        Iterator<CardNumberAllocator.AllocatedNumber> allocated = cardNumberAllocator.next(toAllocate).iterator();
+        for (CardIssueRequest request : requests) {
+            if (request.getCardNumber() == null) {
+                CardNumberAllocator.AllocatedNumber number = allocated.next();
+                numbers.add(number.number());
+                hashes.add(number.hash());
+            } else {
+                String hash = blindIndexUtil.hash(request.getCardNumber());
+                numbers.add(request.getCardNumber());
+                hashes.add(hash);
+                clientHashes.add(hash);
+            }
+        }
+        if (new HashSet<>(hashes).size() != hashes.size()) {
+            throw new RuntimeException("Card numbers in the batch must be unique");
+        }
+        if (!clientHashes.isEmpty() && !cardRepository.findExistingCardNumberHashes(clientHashes).isEmpty()) {
+            throw new RuntimeException("Card with this number already exists");
+        }
+
+        int keyVersion = encryptionUtil.getCurrentKeyVersion();
+        List<String> encrypted = encryptInParallel(numbers);
+        LocalDate expirationDate = LocalDate.now().plusYears(3);
+        List<Card> cards = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Card card = new Card();
+            card.setCardNumberEncrypted(encrypted.get(i));
+            card.setKeyVersion(keyVersion);
+            card.setCardNumberLast4(Card.lastFour(numbers.get(i)));
+            card.setCardNumberHash(hashes.get(i));
+            card.setOwner(owners.get(requests.get(i).getUserId()));
+            card.setExpirationDate(expirationDate);
+            card.setStatus(CardStatus.ACTIVE);
+            card.setBalance(BigDecimal.ZERO);
+            cards.add(card);
+        }
+
+        return cardRepository.saveAll(cards).stream()
+                .map(card -> new CardDTO(card.getId(), card.getCardNumberLast4(), card.getStatus(),
+                        card.getBalance(), card.getOwner().getId(), card.getOwner().getUsername()))
+                .toList();
+    }
+
+    // encryptAll держит один Cipher на поток, поэтому список делится на parallelism частей
+    private List<String> encryptInParallel(List<String> numbers) {
+        int sliceSize = Math.max(1, (numbers.size() + parallelism - 1) / parallelism);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int from = 0; from < numbers.size(); from += sliceSize) {
+            List<String> slice = numbers.subList(from, Math.min(from + sliceSize, numbers.size()));
+            futures.add(encryptionPool.submit(() -> encryptionUtil.encryptAll(slice)));
+        }
+        List<String> encrypted = new ArrayList<>(numbers.size());
+        try {
+            for (Future<List<String>> future : futures) {
+                encrypted.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Card issuance interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Card number encryption failed", e.getCause());
+        }
+        return encrypted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        encryptionPool.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.entity.CardTransactionType;
+import com.example.bankcards.repository.CardTransactionRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Запись движений в журнал. Вызывается внутри транзакции, меняющей баланс,
+// поэтому журнал и cards.balance фиксируются или откатываются вместе
+@Component
+public class CardLedger {
+
+    private final CardTransactionRepository transactionRepository;
+
+    public CardLedger(CardTransactionRepository transactionRepository) {
+        this.transactionRepository = transactionRepository;
+    }
+
+    public void recordDeposit(Long cardId, BigDecimal amount) {
+        transactionRepository.save(new CardTransaction(cardId, CardTransactionType.DEPOSIT, amount, null,
+                LocalDateTime.now()));
+    }
+
+    public void recordTransfer(Long fromCardId, Long toCardId, BigDecimal amount) {
+        List<CardTransaction> entries = new ArrayList<>(2);
+        addTransfer(entries, fromCardId, toCardId, amount, LocalDateTime.now());
+        transactionRepository.saveAll(entries);
+    }
+
+    // Две записи на перевод; INSERT уходят JDBC-батчем при фиксации
+    public void recordTransfers(List<TransferRequest> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<CardTransaction> entries = new ArrayList<>(transfers.size() * 2);
+        for (TransferRequest transfer : transfers) {
+            addTransfer(entries, transfer.getFromCardId(), transfer.getToCardId(), transfer.getAmount(), now);
+        }
+        transactionRepository.saveAll(entries);
+    }
+
+    private void addTransfer(List<CardTransaction> entries, Long fromCardId, Long toCardId,
+                             BigDecimal amount, LocalDateTime now) {
+        entries.add(new CardTransaction(fromCardId, CardTransactionType.TRANSFER_OUT, amount.negate(), toCardId, now));
+        entries.add(new CardTransaction(toCardId, CardTransactionType.TRANSFER_IN, amount, fromCardId, now));
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.BlindIndexUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Выдача номеров карт: Luhn-валидные PAN из настроенных диапазонов BIN.
+// Номера заранее проверены на уникальность по HMAC-индексу (один запрос на порцию) и лежат в неблокирующей
+// очереди; когда в ней остаётся меньше четверти, фоновый поток дополняет её порциями.
+// Создание карты берёт готовый номер без обращения к БД. Совпадение номера, выданного двумя узлами
+// одновременно, маловероятно и всё равно отсекается уникальным индексом ux_cards_card_number_hash
+@Component
+public class CardNumberAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(CardNumberAllocator.class);
+    private static final int MAX_EMPTY_ROUNDS = 10;
+
+    // Номер и его HMAC: хеш уже посчитан при проверке уникальности и нужен для записи карты
+    public record AllocatedNumber(String number, String hash) {}
+
+    private final CardRepository cardRepository;
+    private final BlindIndexUtil blindIndexUtil;
+    private final List<BinRange> binRanges;
+    private final int length;
+    private final int bufferSize;
+    private final int refillBatchSize;
+
+    private final ConcurrentLinkedQueue<AllocatedNumber> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final AtomicBoolean refillScheduled = new AtomicBoolean(false);
+    private final ExecutorService refiller;
+    private final SecureRandom random = new SecureRandom();
+
+    public CardNumberAllocator(CardRepository cardRepository,
+                               BlindIndexUtil blindIndexUtil,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.card-numbers.bin-ranges:400000-400099}") String binRanges,
+                               @Value("${app.card-numbers.length:16}") int length,
+                               @Value("${app.card-numbers.buffer-size:1000}") int bufferSize,
+                               @Value("${app.card-numbers.refill-batch-size:500}") int refillBatchSize) {
+        this.cardRepository = cardRepository;
+        this.blindIndexUtil = blindIndexUtil;
+        this.binRanges = parseBinRanges(binRanges, length);
+        this.length = length;
+        this.bufferSize = bufferSize;
+        this.refillBatchSize = refillBatchSize;
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-number-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("card.numbers.buffered", buffered, AtomicInteger::get)
+                .description("Проверенные номера карт, готовые к выдаче")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prefill() {
+        scheduleRefill();
+    }
+
+    public AllocatedNumber next() {
+        return next(1).get(0);
+    }
+
+    // Номера из очереди; если её не хватило (всплеск выпуска), недостающие генерируются в вызывающем потоке
+    public List<AllocatedNumber> next(int count) {
+        List<AllocatedNumber> numbers = new ArrayList<>(count);
+        AllocatedNumber number;
+        while (numbers.size() < count && (number = buffer.poll()) != null) {
+            buffered.decrementAndGet();
+            numbers.add(number);
+        }
+        if (numbers.size() < count) {
+            numbers.addAll(generateUnique(count - numbers.size()));
+        }
+        if (buffered.get() < bufferSize / 4) {
+            scheduleRefill();
+        }
+        return numbers;
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled.compareAndSet(false, true)) {
+            refiller.execute(this::refill);
+        }
+    }
+
+    void refill() {
+        try {
+            while (buffered.get() < bufferSize) {
+                List<AllocatedNumber> batch = generateUnique(Math.min(refillBatchSize, bufferSize - buffered.get()));
+                buffer.addAll(batch);
+                buffered.addAndGet(batch.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Card number buffer refill failed, {} numbers left", buffered.get(), e);
+        } finally {
+            refillScheduled.set(false);
+        }
+    }
+
+    // Кандидаты одной порцией проверяются одним запросом; занятые заменяются следующей порцией
+    List<AllocatedNumber> generateUnique(int count) {
+        Map<String, String> accepted = new LinkedHashMap<>();
+        int emptyRounds = 0;
+        while (accepted.size() < count) {
+            Map<String, String> candidates = new LinkedHashMap<>();
+            while (candidates.size() < count - accepted.size()) {
+                String number = generate();
+                String hash = blindIndexUtil.hash(number);
+                if (!accepted.containsKey(hash)) {
+                    candidates.putIfAbsent(hash, number);
+                }
+            }
+            candidates.keySet().removeAll(cardRepository.findExistingCardNumberHashes(candidates.keySet()));
+            if (candidates.isEmpty() && ++emptyRounds >= MAX_EMPTY_ROUNDS) {
+                throw new IllegalStateException("Card number ranges are exhausted");
+            }
+            accepted.putAll(candidates);
+        }
+        List<AllocatedNumber> result = new ArrayList<>(count);
+        accepted.forEach((hash, number) -> result.add(new AllocatedNumber(number, hash)));
+        return result;
+    }
+
+    String generate() {
+        BinRange range = binRanges.get(random.nextInt(binRanges.size()));
+        long bin = range.from() + (long) (random.nextDouble() * (range.to() - range.from() + 1));
+        StringBuilder payload = new StringBuilder(length);
+        payload.append(String.format("%0" + range.digits() + "d", bin));
+        while (payload.length() < length - 1) {
+            payload.append((char) ('0' + random.nextInt(10)));
+        }
+        return payload.append(luhnCheckDigit(payload)).toString();
+    }
+
+    // Контрольная цифра Luhn: удваивается каждая вторая цифра справа, считая саму контрольную
+    static int luhnCheckDigit(CharSequence payload) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = payload.length() - 1; i >= 0; i--) {
+            int digit = payload.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    public static boolean isLuhnValid(String number) {
+        return number.length() > 1
+                && luhnCheckDigit(number.substring(0, number.length() - 1)) == number.charAt(number.length() - 1) - '0';
+    }
+
+    // "400000-400099,510000": диапазоны BIN одинаковой длины или отдельные BIN
+    static List<BinRange> parseBinRanges(String config, int length) {
+        List<BinRange> ranges = new ArrayList<>();
+        for (String token : config.split(",")) {
+            String value = token.trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            String[] bounds = value.split("-", 2);
+            String from = bounds[0].trim();
+            String to = bounds.length == 2 ? bounds[1].trim() : from;
+            if (!from.matches("\\d+") || !to.matches("\\d+") || from.length() != to.length()
+                    || from.length() > length - 2 || Long.parseLong(from) > Long.parseLong(to)) {
+                throw new IllegalArgumentException("Invalid BIN range: " + value);
+            }
+            ranges.add(new BinRange(Long.parseLong(from), Long.parseLong(to), from.length()));
+        }
+        if (ranges.isEmpty()) {
+            throw new IllegalArgumentException("app.card-numbers.bin-ranges must not be empty");
+        }
+        return ranges;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    record BinRange(long from, long to, int digits) {}
+}
@@ -0,0 +1,155 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Заполняет card_number_last4 и card_number_hash у карт, созданных до появления этих колонок.
+// Запускается после старта в фоне и не задерживает готовность узла; в кластере работает только узел,
+// взявший аренду "card-number-backfill". Порции по id пишутся JDBC-батчем мимо Hibernate с условием
+// «поля ещё не заполнены»: @Version карты не меняется, а строку, которую уже заполнил другой узел, UPDATE не трогает
+@Component
+public class CardNumberBackfillJob {
+
+    static final String LEASE_NAME = "card-number-backfill";
+
+    private static final Logger log = LoggerFactory.getLogger(CardNumberBackfillJob.class);
+
+    private static final String SELECT_CHUNK =
+            "SELECT id, card_number_encrypted, key_version FROM cards " +
+            "WHERE id > ? AND (card_number_last4 IS NULL OR card_number_hash IS NULL) ORDER BY id LIMIT ?";
+    private static final String UPDATE_CARD =
+            "UPDATE cards SET card_number_last4 = ?, card_number_hash = ? " +
+            "WHERE id = ? AND (card_number_last4 IS NULL OR card_number_hash IS NULL)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final BlindIndexUtil blindIndexUtil;
+    private final JobLeaseService jobLeaseService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Duration leaseDuration;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+
+    public CardNumberBackfillJob(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 EncryptionUtil encryptionUtil,
+                                 BlindIndexUtil blindIndexUtil,
+                                 JobLeaseService jobLeaseService,
+                                 EntityManagerFactory entityManagerFactory,
+                                 @Value("${app.backfill.card-number.enabled:true}") boolean enabled,
+                                 @Value("${app.backfill.card-number.chunk-size:500}") int chunkSize,
+                                 @Value("${app.backfill.card-number.lease-seconds:300}") long leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.blindIndexUtil = blindIndexUtil;
+        this.jobLeaseService = jobLeaseService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (enabled) {
+            runner.submit(this::runSafely);
+        }
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("Card number backfill failed", e);
+        }
+    }
+
+    // Возвращает количество обновлённых карт
+    public long run() {
+        if (!jobLeaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.info("Card number backfill skipped: lease is held by another node");
+            return 0;
+        }
+        long total = 0;
+        long lastId = 0;
+        while (!stopRequested.get()) {
+            List<CardRow> rows = jdbcTemplate.query(SELECT_CHUNK,
+                    (rs, i) -> new CardRow(rs.getLong("id"), rs.getString("card_number_encrypted"), rs.getInt("key_version")),
+                    lastId, chunkSize);
+            if (rows.isEmpty()) {
+                jobLeaseService.release(LEASE_NAME);
+                break;
+            }
+            List<Object[]> updates = backfill(rows);
+            int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE_CARD, updates));
+            // UPDATE шёл мимо Hibernate: карты порции убираются из кэша второго уровня
+            Cache cache = entityManagerFactory.getCache();
+            rows.forEach(row -> cache.evict(Card.class, row.id()));
+            if (counts != null) {
+                for (int count : counts) {
+                    total += Math.max(count, 0);
+                }
+            }
+            lastId = rows.get(rows.size() - 1).id();
+            // Аренду потеряли — останавливаемся, продолжит узел, который её взял
+            if (!jobLeaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+                log.warn("Card number backfill stopped at id {}: lease lost", lastId);
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Card number backfill finished, updated {} cards", total);
+        }
+        return total;
+    }
+
+    // Параметры UPDATE_CARD для каждой строки: последние цифры, HMAC номера, id.
+    // Во время ротации ключей в порции могут быть разные версии — расшифровываем пакетом по каждой
+    List<Object[]> backfill(List<CardRow> rows) {
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        Map<Integer, List<CardRow>> byVersion = rows.stream()
+                .collect(Collectors.groupingBy(CardRow::keyVersion));
+        byVersion.forEach((version, group) -> {
+            List<String> numbers = encryptionUtil.decryptAll(group.stream().map(CardRow::encrypted).toList(), version);
+            for (int i = 0; i < group.size(); i++) {
+                String number = numbers.get(i);
+                updates.add(new Object[]{Card.lastFour(number), blindIndexUtil.hash(number), group.get(i).id()});
+            }
+        });
+        return updates;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        runner.shutdown();
+    }
+
+    record CardRow(long id, String encrypted, int keyVersion) {}
+}
@@ -0,0 +1,193 @@
+package com.example.bankcards.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ночная сверка cards.balance с суммой движений в card_transactions.
+// Пространство id карт делится на диапазоны, диапазоны обрабатываются на ForkJoinPool.
+// На диапазон — один агрегирующий запрос, который возвращает только расхождения; сущности не загружаются.
+// Баланс и журнал фиксируются в одной транзакции, поэтому снимок одного запроса согласован и без блокировок.
+// В кластере сверку выполняет только узел, взявший аренду "card-reconciliation", как и в CardExpirationJob:
+// аренда продлевается после каждого диапазона, завершённый за день запуск другие узлы не повторяют
+@Component
+public class CardReconciliationJob {
+
+    static final String LEASE_NAME = "card-reconciliation";
+
+    private static final Logger log = LoggerFactory.getLogger(CardReconciliationJob.class);
+
+    private static final String SELECT_ID_BOUNDS = "SELECT min(id) AS min_id, max(id) AS max_id FROM cards";
+    private static final String SELECT_MISMATCHES =
+            "SELECT c.id, c.balance, COALESCE(t.total, 0) AS ledger_total FROM cards c " +
+            "LEFT JOIN (SELECT card_id, sum(amount) AS total FROM card_transactions " +
+            "WHERE card_id >= ? AND card_id < ? GROUP BY card_id) t ON t.card_id = c.id " +
+            "WHERE c.id >= ? AND c.id < ? AND c.balance <> COALESCE(t.total, 0)";
+    private static final String INSERT_MISMATCH =
+            "INSERT INTO reconciliation_mismatches (run_started_at, card_id, balance, ledger_total, detected_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final long rangeSize;
+    private final Duration leaseDuration;
+    private final ForkJoinPool pool;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean leaseLost = new AtomicBoolean(false);
+    private final AtomicLong idsTotal = new AtomicLong();
+    private final AtomicLong idsDone = new AtomicLong();
+    private final Counter idsScanned;
+    private final Counter mismatchesFound;
+    private final Timer rangeTimer;
+
+    // parallelism не должен превышать размер пула соединений: каждый диапазон держит соединение на время запроса
+    public CardReconciliationJob(JdbcTemplate jdbcTemplate,
+                                 JobLeaseService jobLeaseService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.reconciliation.range-size:100000}") long rangeSize,
+                                 @Value("${app.reconciliation.parallelism:4}") int parallelism,
+                                 @Value("${app.reconciliation.lease-seconds:300}") long leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLeaseService = jobLeaseService;
+        this.rangeSize = rangeSize;
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+        this.pool = new ForkJoinPool(parallelism);
+        this.idsScanned = Counter.builder("card.reconciliation.ids.scanned")
+                .description("Пройденная часть пространства id карт; rate() — пропускная способность сверки")
+                .register(meterRegistry);
+        this.mismatchesFound = Counter.builder("card.reconciliation.mismatches")
+                .description("Карты, у которых баланс не совпал с журналом")
+                .register(meterRegistry);
+        this.rangeTimer = Timer.builder("card.reconciliation.range.duration")
+                .register(meterRegistry);
+        Gauge.builder("card.reconciliation.progress", this, CardReconciliationJob::progress)
+                .description("Доля пройденного пространства id в текущем или последнем запуске, 0..1")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.reconciliation.cron:0 30 1 * * ?}") // по умолчанию каждую ночь в 1:30
+    public void scheduledRun() {
+        if (!jobLeaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.info("Card reconciliation skipped: lease is held by another node");
+            return;
+        }
+        LocalDate today = jobLeaseService.currentDate();
+        if (jobLeaseService.isCompleted(LEASE_NAME, today)) {
+            log.info("Card reconciliation skipped: already completed for {}", today);
+            return;
+        }
+        if (run() >= 0 && !leaseLost.get()) {
+            jobLeaseService.markCompleted(LEASE_NAME, today);
+        }
+    }
+
+    // Возвращает количество найденных расхождений; -1, если сверка уже идёт.
+    // Вызывается под арендой LEASE_NAME: если продлить её не удалось, оставшиеся диапазоны пропускаются
+    public long run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Card reconciliation is already running");
+            return -1;
+        }
+        leaseLost.set(false);
+        try {
+            List<long[]> bounds = jdbcTemplate.query(SELECT_ID_BOUNDS, (rs, i) -> rs.getObject("min_id") == null
+                    ? null
+                    : new long[]{rs.getLong("min_id"), rs.getLong("max_id")});
+            if (bounds.isEmpty() || bounds.get(0) == null) {
+                return 0;
+            }
+            long fromId = bounds.get(0)[0];
+            long toId = bounds.get(0)[1] + 1;
+            Timestamp runStartedAt = Timestamp.from(Instant.now());
+            idsTotal.set(toId - fromId);
+            idsDone.set(0);
+
+            long started = System.nanoTime();
+            long mismatches = pool.invoke(new RangeTask(fromId, toId, runStartedAt));
+            log.info("Card reconciliation finished in {} s: ids {}..{}, {} mismatches",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started), fromId, toId - 1, mismatches);
+            return mismatches;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    long reconcileRange(long fromId, long toId, Timestamp runStartedAt) {
+        if (leaseLost.get()) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        Timestamp detectedAt = Timestamp.from(Instant.now());
+        List<Object[]> mismatches = jdbcTemplate.query(SELECT_MISMATCHES,
+                (rs, i) -> new Object[]{runStartedAt, rs.getLong("id"), rs.getBigDecimal("balance"),
+                        rs.getBigDecimal("ledger_total"), detectedAt},
+                fromId, toId, fromId, toId);
+        if (!mismatches.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_MISMATCH, mismatches);
+            mismatchesFound.increment(mismatches.size());
+            log.warn("Card reconciliation: {} mismatches in ids {}..{}", mismatches.size(), fromId, toId - 1);
+        }
+        idsScanned.increment(toId - fromId);
+        idsDone.addAndGet(toId - fromId);
+        rangeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (!jobLeaseService.tryAcquire(LEASE_NAME, leaseDuration) && leaseLost.compareAndSet(false, true)) {
+            log.warn("Card reconciliation stopped after ids {}..{}: lease lost", fromId, toId - 1);
+        }
+        return mismatches.size();
+    }
+
+    private double progress() {
+        long total = idsTotal.get();
+        return total == 0 ? 0 : (double) idsDone.get() / total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Делит диапазон [fromId, toId) пополам, пока он больше range-size
+    private final class RangeTask extends RecursiveTask<Long> {
+        private final long fromId;
+        private final long toId;
+        private final Timestamp runStartedAt;
+
+        private RangeTask(long fromId, long toId, Timestamp runStartedAt) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.runStartedAt = runStartedAt;
+        }
+
+        @Override
+        protected Long compute() {
+            if (toId - fromId <= rangeSize) {
+                return reconcileRange(fromId, toId, runStartedAt);
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            RangeTask left = new RangeTask(fromId, middle, runStartedAt);
+            left.fork();
+            long right = new RangeTask(middle, toId, runStartedAt).compute();
+            return right + left.join();
+        }
+    }
+}
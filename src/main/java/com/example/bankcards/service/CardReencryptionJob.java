@@ -0,0 +1,218 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ReencryptionStatusDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Фоновое перешифрование номеров карт текущим ключом после ротации app.aes-key.
+// Карты читаются порциями по возрастанию id (keyset), перешифровываются параллельно
+// и записываются JDBC-батчем в короткой транзакции вместе с контрольной точкой
+@Component
+public class CardReencryptionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CardReencryptionJob.class);
+
+    private static final String SELECT_CHUNK =
+            "SELECT id, card_number_encrypted, key_version FROM cards " +
+            "WHERE id > ? AND key_version <> ? ORDER BY id LIMIT ?";
+    // Условие по key_version защищает от перезаписи строки, изменённой параллельно
+    private static final String UPDATE_CARD =
+            "UPDATE cards SET card_number_encrypted = ?, key_version = ? WHERE id = ? AND key_version = ?";
+    private static final String SELECT_CHECKPOINT =
+            "SELECT last_id, processed FROM card_reencryption_state WHERE target_version = ?";
+    private static final String UPSERT_CHECKPOINT =
+            "INSERT INTO card_reencryption_state (target_version, last_id, processed, updated_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (target_version) DO UPDATE SET last_id = EXCLUDED.last_id, " +
+            "processed = EXCLUDED.processed, updated_at = EXCLUDED.updated_at";
+    private static final String DELETE_CHECKPOINT =
+            "DELETE FROM card_reencryption_state WHERE target_version = ?";
+    private static final String COUNT_REMAINING =
+            "SELECT count(*) FROM cards WHERE id > ? AND key_version <> ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxRowsPerSecond;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+    private final ExecutorService workers;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+    private volatile long processed;
+    private volatile long remainingAtStart;
+    private volatile long lastId;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public CardReencryptionJob(JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               EncryptionUtil encryptionUtil,
+                               EntityManagerFactory entityManagerFactory,
+                               @Value("${app.reencryption.chunk-size:1000}") int chunkSize,
+                               @Value("${app.reencryption.parallelism:4}") int parallelism,
+                               @Value("${app.reencryption.max-rows-per-second:5000}") int maxRowsPerSecond) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.entityManagerFactory = entityManagerFactory;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    // Запускает задание в фоне, если оно ещё не идёт
+    public ReencryptionStatusDTO start() {
+        if (running.compareAndSet(false, true)) {
+            stopRequested.set(false);
+            runner.submit(this::runSafely);
+        }
+        return getStatus();
+    }
+
+    // Останавливает задание после текущей порции; прогресс сохранён в контрольной точке
+    public ReencryptionStatusDTO stop() {
+        stopRequested.set(true);
+        return getStatus();
+    }
+
+    public ReencryptionStatusDTO getStatus() {
+        return new ReencryptionStatusDTO(encryptionUtil.getCurrentKeyVersion(), running.get(), processed,
+                remainingAtStart, lastId, startedAt, finishedAt, error);
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (Exception e) {
+            error = e.getMessage();
+            log.error("Card re-encryption failed at id {}", lastId, e);
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void run() throws InterruptedException, ExecutionException {
+        int targetVersion = encryptionUtil.getCurrentKeyVersion();
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+
+        // Продолжаем с контрольной точки, если задание уже запускалось
+        List<long[]> checkpoint = jdbcTemplate.query(SELECT_CHECKPOINT,
+                (rs, i) -> new long[]{rs.getLong("last_id"), rs.getLong("processed")}, targetVersion);
+        lastId = checkpoint.isEmpty() ? 0 : checkpoint.get(0)[0];
+        processed = checkpoint.isEmpty() ? 0 : checkpoint.get(0)[1];
+        Long remaining = jdbcTemplate.queryForObject(COUNT_REMAINING, Long.class, lastId, targetVersion);
+        remainingAtStart = remaining == null ? 0 : remaining;
+        log.info("Card re-encryption to key version {} started from id {}, {} cards left",
+                targetVersion, lastId, remainingAtStart);
+
+        while (!stopRequested.get()) {
+            long chunkStarted = System.nanoTime();
+            List<CardRow> rows = jdbcTemplate.query(SELECT_CHUNK,
+                    (rs, i) -> new CardRow(rs.getLong("id"), rs.getString("card_number_encrypted"), rs.getInt("key_version")),
+                    lastId, targetVersion, chunkSize);
+            if (rows.isEmpty()) {
+                jdbcTemplate.update(DELETE_CHECKPOINT, targetVersion);
+                log.info("Card re-encryption to key version {} finished, {} cards processed", targetVersion, processed);
+                return;
+            }
+
+            List<Object[]> updates = reencryptInParallel(rows, targetVersion);
+            long chunkLastId = rows.get(rows.size() - 1).id();
+            long chunkProcessed = processed + rows.size();
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPDATE_CARD, updates);
+                jdbcTemplate.update(UPSERT_CHECKPOINT, targetVersion, chunkLastId, chunkProcessed,
+                        Timestamp.from(Instant.now()));
+            });
+            // UPDATE шёл мимо Hibernate: карты порции убираются из кэша второго уровня
+            Cache cache = entityManagerFactory.getCache();
+            rows.forEach(row -> cache.evict(Card.class, row.id()));
+            lastId = chunkLastId;
+            processed = chunkProcessed;
+
+            throttle(rows.size(), chunkStarted);
+        }
+        log.info("Card re-encryption stopped at id {}, {} cards processed", lastId, processed);
+    }
+
+    private List<Object[]> reencryptInParallel(List<CardRow> rows, int targetVersion)
+            throws InterruptedException, ExecutionException {
+        int sliceSize = Math.max(1, (rows.size() + parallelism - 1) / parallelism);
+        List<Future<List<Object[]>>> futures = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += sliceSize) {
+            List<CardRow> slice = rows.subList(from, Math.min(from + sliceSize, rows.size()));
+            futures.add(workers.submit(() -> reencrypt(slice, targetVersion)));
+        }
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (Future<List<Object[]>> future : futures) {
+            updates.addAll(future.get());
+        }
+        return updates;
+    }
+
+    // Параметры UPDATE_CARD для каждой строки: новый шифротекст, новая версия, id, старая версия
+    List<Object[]> reencrypt(List<CardRow> rows, int targetVersion) {
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        Map<Integer, List<CardRow>> byVersion = rows.stream()
+                .collect(Collectors.groupingBy(CardRow::keyVersion));
+        byVersion.forEach((version, group) -> {
+            List<String> plain = encryptionUtil.decryptAll(group.stream().map(CardRow::encrypted).toList(), version);
+            List<String> encrypted = encryptionUtil.encryptAll(plain);
+            for (int i = 0; i < group.size(); i++) {
+                updates.add(new Object[]{encrypted.get(i), targetVersion, group.get(i).id(), version});
+            }
+        });
+        return updates;
+    }
+
+    // Ограничение скорости, чтобы задание не мешало рабочей нагрузке
+    private void throttle(int rows, long chunkStartedNanos) throws InterruptedException {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long minDurationMs = rows * 1000L / maxRowsPerSecond;
+        long elapsedMs = (System.nanoTime() - chunkStartedNanos) / 1_000_000;
+        if (elapsedMs < minDurationMs) {
+            Thread.sleep(minDurationMs - elapsedMs);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        runner.shutdown();
+        workers.shutdown();
+    }
+
+    record CardRow(long id, String encrypted, int keyVersion) {}
+}
@@ -1,21 +1,33 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadFromReplica;
+import com.example.bankcards.dto.BatchTransferMode;
+import com.example.bankcards.dto.BatchTransferResultDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.CursorUtil;
 import com.example.bankcards.util.EncryptionUtil;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 public class CardService {
@@ -23,21 +35,48 @@ public class CardService {
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final EncryptionUtil encryptionUtil;
+    private final BlindIndexUtil blindIndexUtil;
+    private final TransferStrategy transferStrategy;
+    private final CardLedger cardLedger;
+    private final CardNumberAllocator cardNumberAllocator;
 
-    public CardService(CardRepository cardRepository, UserRepository userRepository, EncryptionUtil encryptionUtil) {
+    public CardService(CardRepository cardRepository, UserRepository userRepository,
+                       EncryptionUtil encryptionUtil, BlindIndexUtil blindIndexUtil,
+                       TransferStrategy transferStrategy, CardLedger cardLedger,
+                       CardNumberAllocator cardNumberAllocator) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
         this.encryptionUtil = encryptionUtil;
+        this.blindIndexUtil = blindIndexUtil;
+        this.transferStrategy = transferStrategy;
+        this.cardLedger = cardLedger;
+        this.cardNumberAllocator = cardNumberAllocator;
     }
 
+    // cardNumber == null — номер выдаёт CardNumberAllocator, он уже проверен на уникальность
+    @Transactional
     public CardDTO createCard(Long userId, String cardNumber) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        String cardNumberHash;
+        if (cardNumber == null) {
+            CardNumberAllocator.AllocatedNumber allocated = cardNumberAllocator.next();
+            cardNumber = allocated.number();
+            cardNumberHash = allocated.hash();
+        } else {
+            // Проверка дубликата — один проход по индексу HMAC, без расшифровки
+            cardNumberHash = blindIndexUtil.hash(cardNumber);
+            if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
+                throw new RuntimeException("Card with this number already exists");
+            }
+        }
+
+        // setCardNumberPlain шифрует номер один раз и заполняет последние цифры и версию ключа
         Card card = new Card();
         card.setEncryptionUtil(encryptionUtil);
         card.setCardNumberPlain(cardNumber);
-        card.setCardNumberEncrypted(encryptionUtil.encrypt(cardNumber));
+        card.setCardNumberHash(cardNumberHash);
         card.setOwner(user);
         card.setExpirationDate(LocalDate.now().plusYears(3));
         card.setStatus(CardStatus.ACTIVE);
@@ -46,52 +85,104 @@ public class CardService {
         return toDto(cardRepository.save(card));
     }
 
+    // ADMIN: поиск карты по номеру через HMAC-индекс
+    public Optional<CardDTO> findByCardNumber(String cardNumber) {
+        return cardRepository.findByCardNumberHash(blindIndexUtil.hash(cardNumber))
+                .map(this::toDto);
+    }
+
+    @ReadFromReplica
+    @Transactional(readOnly = true)
     public List<CardDTO> getUserCards(Long userId) {
-        return cardRepository.findByOwnerId(userId).stream()
-                .map(this::toDto)
-                .toList();
+        return cardRepository.findDtosByOwnerId(userId);
     }
 
+    @ReadFromReplica
+    @Transactional(readOnly = true)
     public List<CardDTO> getAllCards() {
-        return cardRepository.findAll().stream()
-                .map(this::toDto)
-                .toList();
+        return cardRepository.findAllDtos();
     }
 
+    // Баланс меняется одним условным UPDATE, ответ читается одной проекцией карты с владельцем.
+    // Карта читается для выбора ошибки только при неудаче
+    @Transactional
     public CardDTO deposit(Long cardId, BigDecimal amount) {
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new RuntimeException("Card not found"));
-        if (card.getStatus() != CardStatus.ACTIVE) {
+        if (cardRepository.depositIfActive(cardId, amount) == 0) {
+            if (!cardRepository.existsById(cardId)) {
+                throw new RuntimeException("Card not found");
+            }
             throw new RuntimeException("Only active cards can be recharged");
         }
-        card.setBalance(card.getBalance().add(amount));
-        return toDto(cardRepository.save(card));
+        cardLedger.recordDeposit(cardId, amount);
+        return cardRepository.findDtoById(cardId)
+                .orElseThrow(() -> new RuntimeException("Card not found"));
     }
 
-    @Transactional
+    // Защита от конкурентных изменений балансов — в выбранной TransferStrategy
     public void transfer(Long fromCardId, Long toCardId, BigDecimal amount) {
-        Card from = cardRepository.findById(fromCardId)
-                .orElseThrow(() -> new RuntimeException("Source card not found"));
-        Card to = cardRepository.findById(toCardId)
-                .orElseThrow(() -> new RuntimeException("Target card not found"));
-
-        if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
-            throw new RuntimeException("Both cards must be ACTIVE for transfer");
+        if (fromCardId.equals(toCardId)) {
+            throw new RuntimeException("Source and target cards must be different");
         }
+        transferStrategy.transfer(fromCardId, toCardId, amount);
+    }
 
-        if (!from.getOwner().getId().equals(to.getOwner().getId())) {
-            throw new RuntimeException("You can only transfer between your own cards");
+    // Пакет переводов в одной транзакции: карты читаются и блокируются одним запросом,
+    // балансы меняются в памяти, UPDATE карт и INSERT журнала уходят JDBC-батчами при фиксации
+    @Transactional
+    public List<BatchTransferResultDTO> transferBatch(List<TransferRequest> transfers, BatchTransferMode mode) {
+        Set<Long> ids = new TreeSet<>();
+        for (TransferRequest transfer : transfers) {
+            ids.add(transfer.getFromCardId());
+            ids.add(transfer.getToCardId());
+        }
+        Map<Long, Card> cards = new HashMap<>();
+        Map<Long, BigDecimal> originalBalances = new HashMap<>();
+        for (Card card : cardRepository.findAllByIdForUpdate(ids)) {
+            cards.put(card.getId(), card);
+            originalBalances.put(card.getId(), card.getBalance());
         }
 
-        if (from.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Not enough funds");
+        List<BatchTransferResultDTO> results = new ArrayList<>(transfers.size());
+        List<TransferRequest> applied = new ArrayList<>(transfers.size());
+        boolean rejected = false;
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            String error = null;
+            try {
+                if (transfer.getFromCardId().equals(transfer.getToCardId())) {
+                    throw new RuntimeException("Source and target cards must be different");
+                }
+                Card from = cards.get(transfer.getFromCardId());
+                Card to = cards.get(transfer.getToCardId());
+                if (from == null) throw new RuntimeException("Source card not found");
+                if (to == null) throw new RuntimeException("Target card not found");
+                TransferRules.apply(from, to, transfer.getAmount());
+                applied.add(transfer);
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+                rejected = true;
+            }
+            results.add(new BatchTransferResultDTO(i, transfer.getFromCardId(), transfer.getToCardId(),
+                    transfer.getAmount(), error == null ? BatchTransferResultDTO.APPLIED : BatchTransferResultDTO.REJECTED,
+                    error));
         }
 
-        from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
+        if (rejected && mode == BatchTransferMode.ALL_OR_NOTHING) {
+            // Возвращаем исходные балансы: грязных сущностей не остаётся, UPDATE не выполняются
+            cards.forEach((id, card) -> card.setBalance(originalBalances.get(id)));
+            return results.stream()
+                    .map(r -> BatchTransferResultDTO.APPLIED.equals(r.getStatus())
+                            ? new BatchTransferResultDTO(r.getIndex(), r.getFromCardId(), r.getToCardId(),
+                                    r.getAmount(), BatchTransferResultDTO.ROLLED_BACK, null)
+                            : r)
+                    .toList();
+        }
+        cardLedger.recordTransfers(applied);
+        return results;
     }
 
     // USER: запрос блокировки
+    @Transactional
     public CardDTO requestBlock(Long cardId, String username) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new RuntimeException("Card not found"));
@@ -103,6 +194,7 @@ public class CardService {
     }
 
     // ADMIN: блокировка
+    @Transactional
     public CardDTO blockCard(Long cardId) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new RuntimeException("Card not found"));
@@ -111,6 +203,7 @@ public class CardService {
     }
 
     // ADMIN: активация
+    @Transactional
     public CardDTO activateCard(Long cardId) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new RuntimeException("Card not found"));
@@ -119,15 +212,19 @@ public class CardService {
     }
 
     // USER: свои карты
+    // Один запрос; существование пользователя проверяем, только если карт нет
+    @ReadFromReplica
+    @Transactional(readOnly = true)
     public List<CardDTO> getCardsByUsername(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return cardRepository.findByOwner(user).stream()
-                .map(this::toDto)
-                .toList();
+        List<CardDTO> cards = cardRepository.findDtosByOwnerUsername(username);
+        if (cards.isEmpty() && userRepository.findByUsername(username).isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        return cards;
     }
 
     // Удаление карты
+    @Transactional
     public void deleteCard(Long cardId) {
         if (!cardRepository.existsById(cardId)) {
             throw new RuntimeException("Card not found");
@@ -135,54 +232,55 @@ public class CardService {
         cardRepository.deleteById(cardId);
     }
 
-    // Получение всех карт
+    // Получение всех карт (OFFSET-страницы, оставлены для совместимости)
+    @ReadFromReplica
+    @Transactional(readOnly = true)
     public List<CardDTO> getAllCards(int page, int size, String status) {
         Pageable pageable = PageRequest.of(page, size);
 
         if (status != null) {
-            CardStatus cardStatus;
-            try {
-                cardStatus = CardStatus.valueOf(status.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                throw new RuntimeException("Invalid status: " + status);
-            }
-            return cardRepository.findByStatus(cardStatus, pageable)
-                    .stream()
-                    .map(this::toDto)
-                    .toList();
+            return cardRepository.findDtoPageByStatus(parseStatus(status), pageable);
         } else {
-            return cardRepository.findAll(pageable)
-                    .stream()
-                    .map(this::toDto)
-                    .toList();
+            return cardRepository.findDtoPage(pageable);
+        }
+    }
+
+    // Получение всех карт по курсору: after — курсор из X-Next-Cursor предыдущей страницы
+    @ReadFromReplica
+    @Transactional(readOnly = true)
+    public Slice<CardDTO> getAllCardsAfter(String after, int size, String status) {
+        CursorUtil.checkPageSize(size);
+        long afterId = CursorUtil.decode(after);
+        Pageable pageable = PageRequest.of(0, size);
+
+        if (status != null) {
+            return cardRepository.findDtoSliceByStatusAfter(parseStatus(status), afterId, pageable);
+        } else {
+            return cardRepository.findDtoSliceAfter(afterId, pageable);
+        }
+    }
+
+    private CardStatus parseStatus(String status) {
+        try {
+            return CardStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid status: " + status);
         }
     }
 
     // Посмотреть баланс
+    @ReadFromReplica
+    @Transactional(readOnly = true)
     public BigDecimal getBalance(Long cardId) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new RuntimeException("Card not found"));
         return card.getBalance();
     }
 
-    @Transactional
-    @Scheduled(cron = "0 0 0 * * ?") // раз в день в полночь
-    public void updateExpiredCards() {
-        List<Card> cards = cardRepository.findAll();
-        LocalDate today = LocalDate.now();
-
-        for (Card card : cards) {
-            if (card.getExpirationDate().isBefore(today) && card.getStatus() != CardStatus.EXPIRED) {
-                card.setStatus(CardStatus.EXPIRED);
-                cardRepository.save(card);
-            }
-        }
-    }
-
     private CardDTO toDto(Card card) {
         return new CardDTO(
                 card.getId(),
-                card.getMaskedNumber(encryptionUtil), // маска готовится здесь
+                card.getMaskedNumber(),
                 card.getStatus().toString(),
                 card.getBalance(),
                 card.getOwner().getId(),
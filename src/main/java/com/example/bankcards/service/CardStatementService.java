@@ -0,0 +1,82 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Выписка по карте потоком NDJSON: строки читаются курсором порциями по fetch-size и сразу пишутся в ответ,
+// весь результат в памяти не держится. Курсор в PostgreSQL работает только внутри транзакции
+@Service
+public class CardStatementService {
+
+    private static final String SELECT_STATEMENT =
+            "SELECT id, card_id, type, amount, counterparty_card_id, created_at FROM card_transactions " +
+            "WHERE card_id = ? AND created_at >= ? AND created_at < ? ORDER BY created_at, id";
+
+    private static final LocalDateTime EARLIEST = LocalDate.of(1970, 1, 1).atStartOfDay();
+
+    private final CardRepository cardRepository;
+    private final JdbcTemplate statementJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter writer;
+
+    public CardStatementService(CardRepository cardRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                @Value("${app.ledger.statement-fetch-size:500}") int fetchSize) {
+        this.cardRepository = cardRepository;
+        this.statementJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.statementJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writer = objectMapper.writerFor(CardTransactionDTO.class);
+    }
+
+    // Проверяется до начала потока: после первых байт ответа код ошибки уже не вернуть
+    public void checkAccess(Long cardId, String username, boolean admin) {
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new RuntimeException("Card not found"));
+        if (!admin && !card.getOwner().getUsername().equals(username)) {
+            throw new RuntimeException("You can view statements only for your own cards");
+        }
+    }
+
+    // from и to включительно; без границ — вся история
+    public void writeStatement(Long cardId, LocalDate from, LocalDate to, OutputStream out) {
+        Timestamp fromTs = Timestamp.valueOf(from == null ? EARLIEST : from.atStartOfDay());
+        Timestamp toTs = Timestamp.valueOf(to == null
+                ? LocalDate.now().plusDays(1).atStartOfDay()
+                : to.plusDays(1).atStartOfDay());
+        readOnlyTransaction.executeWithoutResult(status ->
+                statementJdbcTemplate.query(SELECT_STATEMENT, rs -> {
+                    CardTransactionDTO row = new CardTransactionDTO(
+                            rs.getLong("id"),
+                            rs.getLong("card_id"),
+                            rs.getString("type"),
+                            rs.getBigDecimal("amount"),
+                            rs.getObject("counterparty_card_id", Long.class),
+                            rs.getTimestamp("created_at").toLocalDateTime());
+                    try {
+                        out.write(writer.writeValueAsBytes(row));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, cardId, fromTs, toTs));
+    }
+}
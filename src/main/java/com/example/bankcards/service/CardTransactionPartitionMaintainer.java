@@ -0,0 +1,71 @@
+package com.example.bankcards.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.YearMonth;
+
+// Заранее создаёт месячные секции card_transactions, чтобы записи не попадали в секцию DEFAULT:
+// секцию за месяц нельзя создать, если в DEFAULT уже есть строки этого месяца.
+// Одновременный CREATE TABLE IF NOT EXISTS ... PARTITION OF из двух сессий падает на pg_type,
+// поэтому секции создаёт только узел, взявший аренду "card-transaction-partitions"
+@Component
+public class CardTransactionPartitionMaintainer {
+
+    static final String LEASE_NAME = "card-transaction-partitions";
+
+    private static final Logger log = LoggerFactory.getLogger(CardTransactionPartitionMaintainer.class);
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(1);
+
+    private static final String CREATE_PARTITION =
+            "CREATE TABLE IF NOT EXISTS card_transactions_%d_%02d PARTITION OF card_transactions " +
+            "FOR VALUES FROM ('%s') TO ('%s')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final int monthsAhead;
+
+    public CardTransactionPartitionMaintainer(JdbcTemplate jdbcTemplate, JobLeaseService jobLeaseService,
+                                              @Value("${app.ledger.partition-months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLeaseService = jobLeaseService;
+        this.monthsAhead = monthsAhead;
+    }
+
+    // Ошибка только логируется: исключение из обработчика ApplicationReadyEvent остановило бы запуск узла,
+    // а недостающие секции создаст следующий запуск
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 0 3 * * ?") // раз в день в 3:00
+    public void ensurePartitions() {
+        try {
+            if (!jobLeaseService.tryAcquire(LEASE_NAME, LEASE_DURATION)) {
+                log.info("Card transaction partitions skipped: lease is held by another node");
+                return;
+            }
+            try {
+                ensurePartitions(YearMonth.from(jobLeaseService.currentDate()));
+            } finally {
+                jobLeaseService.release(LEASE_NAME);
+            }
+        } catch (DataAccessException e) {
+            log.error("Card transaction partition maintenance failed", e);
+        }
+    }
+
+    void ensurePartitions(YearMonth current) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            jdbcTemplate.execute(String.format(CREATE_PARTITION, month.getYear(), month.getMonthValue(),
+                    month.atDay(1), month.plusMonths(1).atDay(1)));
+        }
+        log.debug("Card transaction partitions ensured up to {}", current.plusMonths(monthsAhead));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+// Повтор запроса с тем же Idempotency-Key возвращает сохранённый ответ и не выполняет операцию снова.
+// Резерв ключа, операция и запись ответа идут раздельно: при ошибке операции резерв удаляется и повтор выполнит её заново;
+// если процесс упал между операцией и записью ответа, ключ остаётся «в работе» до истечения ttl — повторно операция не выполнится.
+// Недавние ответы держим в ограниченном кэше, чтобы частые повторы не ходили в БД
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    // Конкурентный INSERT с тем же ключом ждёт фиксации первого резерва и затем ничего не вставляет
+    private static final String RESERVE =
+            "INSERT INTO idempotency_keys (owner, idem_key, request_hash, created_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (owner, idem_key) DO NOTHING";
+    private static final String COMPLETE =
+            "UPDATE idempotency_keys SET response_body = ? WHERE owner = ? AND idem_key = ?";
+    private static final String RELEASE =
+            "DELETE FROM idempotency_keys WHERE owner = ? AND idem_key = ? AND response_body IS NULL";
+    private static final String SELECT =
+            "SELECT request_hash, response_body FROM idempotency_keys WHERE owner = ? AND idem_key = ?";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM idempotency_keys WHERE created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Cache<String, StoredResponse> recent;
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.idempotency.cache-size:10000}") long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // owner — пользователь, в пределах которого уникален ключ; request — параметры запроса,
+    // по ним отличаем честный повтор от повторного использования ключа для другой операции
+    public <T> T execute(String owner, String key, String request, Class<T> type, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters long");
+        }
+        String requestHash = sha256(request);
+        String cacheKey = owner + '\n' + key;
+
+        StoredResponse cached = recent.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash, type);
+        }
+
+        // Резерв ключа фиксируется сразу отдельной короткой транзакцией: операция идёт вне её и открывает
+        // свои транзакции (OptimisticTransferStrategy повторяет попытки только так)
+        StoredResponse existing = transactionTemplate.execute(status -> {
+            int reserved = jdbcTemplate.update(RESERVE, owner, key, requestHash, Timestamp.from(Instant.now()));
+            if (reserved == 0) {
+                return jdbcTemplate.queryForObject(SELECT,
+                        (rs, i) -> new StoredResponse(rs.getString("request_hash"), rs.getString("response_body")),
+                        owner, key);
+            }
+            return null;
+        });
+        if (existing != null) {
+            if (existing.body() != null) {
+                recent.put(cacheKey, existing);
+            }
+            return replay(existing, requestHash, type);
+        }
+
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            release(owner, key);
+            throw e;
+        }
+        String body = toJson(result);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(COMPLETE, body, owner, key));
+        recent.put(cacheKey, new StoredResponse(requestHash, body));
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.sweep-interval-ms:600000}")
+    public void purgeExpired() {
+        int removed = jdbcTemplate.update(DELETE_EXPIRED, Timestamp.from(Instant.now().minus(ttl)));
+        if (removed > 0) {
+            log.info("Removed {} expired idempotency keys", removed);
+        }
+    }
+
+    // Операция не выполнилась: освобождаем ключ, чтобы повтор с ним выполнил её заново
+    private void release(String owner, String key) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(RELEASE, owner, key));
+        } catch (RuntimeException e) {
+            log.warn("Cannot release idempotency key {} of {}: {}", key, owner, e.getMessage());
+        }
+    }
+
+    private <T> T replay(StoredResponse stored, String requestHash, Class<T> type) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException(HEADER + " was already used for a different request");
+        }
+        if (stored.body() == null) {
+            throw new IdempotencyKeyConflictException("Request with this " + HEADER + " is still in progress");
+        }
+        try {
+            return objectMapper.readValue(stored.body(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored response", e);
+        }
+    }
+
+    private String toJson(Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store response", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    record StoredResponse(String requestHash, String body) {}
+}
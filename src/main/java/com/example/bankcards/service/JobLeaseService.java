@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+// Аренда задания в таблице job_leases: из узлов кластера задание выполняет тот, кто взял аренду.
+// Аренда ограничена по времени, поэтому упавший узел не блокирует задание навсегда; длинные задания её продлевают.
+// Время берётся только из БД: расхождение часов узлов не влияет на то, чья аренда действует
+@Service
+public class JobLeaseService {
+
+    private static final String UNTIL = "CURRENT_TIMESTAMP + CAST(? AS INTEGER) * INTERVAL '1' SECOND";
+    private static final String TAKE_OVER =
+            "UPDATE job_leases SET owner = ?, locked_until = " + UNTIL +
+            " WHERE name = ? AND (locked_until <= CURRENT_TIMESTAMP OR owner = ?)";
+    private static final String INSERT =
+            "INSERT INTO job_leases (name, owner, locked_until) VALUES (?, ?, " + UNTIL + ")";
+    private static final String RELEASE =
+            "UPDATE job_leases SET locked_until = CURRENT_TIMESTAMP WHERE name = ? AND owner = ?";
+    private static final String COMPLETE =
+            "UPDATE job_leases SET completed_on = ? WHERE name = ? AND owner = ?";
+    private static final String SELECT_COMPLETED =
+            "SELECT completed_on FROM job_leases WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String owner;
+
+    public JobLeaseService(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, hostName() + "/" + UUID.randomUUID());
+    }
+
+    JobLeaseService(JdbcTemplate jdbcTemplate, String owner) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.owner = owner;
+    }
+
+    // Взять или продлить аренду. false — аренда у другого узла и ещё не истекла
+    public boolean tryAcquire(String name, Duration duration) {
+        long seconds = duration.toSeconds();
+        if (jdbcTemplate.update(TAKE_OVER, owner, seconds, name, owner) == 1) {
+            return true;
+        }
+        try {
+            return jdbcTemplate.update(INSERT, name, owner, seconds) == 1;
+        } catch (DuplicateKeyException e) {
+            // Строка есть и аренда действует, либо другой узел вставил её одновременно с нами
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        jdbcTemplate.update(RELEASE, name, owner);
+    }
+
+    // Сегодняшняя дата по часам БД — одна для всех узлов
+    public LocalDate currentDate() {
+        return jdbcTemplate.queryForObject("SELECT CURRENT_DATE", LocalDate.class);
+    }
+
+    // Ежедневное задание уже завершено за этот день (каким угодно узлом)
+    public boolean isCompleted(String name, LocalDate day) {
+        List<LocalDate> completed = jdbcTemplate.queryForList(SELECT_COMPLETED, LocalDate.class, name);
+        return !completed.isEmpty() && day.equals(completed.get(0));
+    }
+
+    // Отмечает запуск завершённым; если аренду за это время забрал другой узел, отметки не будет
+    public void markCompleted(String name, LocalDate day) {
+        jdbcTemplate.update(COMPLETE, day, name, owner);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Без блокировок: конфликт ловится по @Version карты при коммите, перевод повторяется
+// в новой транзакции не более max-attempts раз. Подходит, когда одни и те же карты редко переводят одновременно
+@Component
+@ConditionalOnProperty(name = "app.transfer.strategy", havingValue = "optimistic")
+public class OptimisticTransferStrategy implements TransferStrategy {
+
+    private final CardRepository cardRepository;
+    private final CardLedger cardLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final Counter conflicts;
+    private final Counter exhausted;
+
+    public OptimisticTransferStrategy(CardRepository cardRepository,
+                                      CardLedger cardLedger,
+                                      TransactionTemplate transactionTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.transfer.optimistic.max-attempts:5}") int maxAttempts,
+                                      @Value("${app.transfer.optimistic.backoff-ms:10}") long backoffMs) {
+        this.cardRepository = cardRepository;
+        this.cardLedger = cardLedger;
+        // Каждая попытка — своя транзакция, даже если вызывающий код уже открыл транзакцию:
+        // иначе конфликт версий всплывёт при коммите внешней транзакции, вне цикла повторов
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.conflicts = Counter.builder("card.transfer.conflicts")
+                .description("Конфликты версий карт при переводе")
+                .tag("strategy", "optimistic")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("card.transfer.retries.exhausted")
+                .tag("strategy", "optimistic")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void transfer(Long fromCardId, Long toCardId, BigDecimal amount) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Card from = cardRepository.findById(fromCardId)
+                            .orElseThrow(() -> new RuntimeException("Source card not found"));
+                    Card to = cardRepository.findById(toCardId)
+                            .orElseThrow(() -> new RuntimeException("Target card not found"));
+                    TransferRules.apply(from, to, amount);
+                    cardLedger.recordTransfer(fromCardId, toCardId, amount);
+                });
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    // Случайная задержка, растущая с номером попытки, чтобы конкурирующие переводы разошлись
+    private void backoff(int attempt) {
+        if (backoffMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Перевод прерван", e);
+        }
+    }
+}
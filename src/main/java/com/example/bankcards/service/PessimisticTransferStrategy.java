@@ -0,0 +1,57 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// SELECT ... FOR UPDATE по обеим картам. Блокировки всегда берутся в порядке возрастания id,
+// поэтому встречные переводы A→B и B→A ждут друг друга, а не взаимоблокируются
+@Component
+@ConditionalOnProperty(name = "app.transfer.strategy", havingValue = "pessimistic")
+public class PessimisticTransferStrategy implements TransferStrategy {
+
+    private final CardRepository cardRepository;
+    private final CardLedger cardLedger;
+    private final Timer lockWait;
+
+    public PessimisticTransferStrategy(CardRepository cardRepository, CardLedger cardLedger,
+                                       MeterRegistry meterRegistry) {
+        this.cardRepository = cardRepository;
+        this.cardLedger = cardLedger;
+        this.lockWait = Timer.builder("card.transfer.lock.wait")
+                .description("Ожидание блокировок строк карт при переводе")
+                .tag("strategy", "pessimistic")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public void transfer(Long fromCardId, Long toCardId, BigDecimal amount) {
+        long started = System.nanoTime();
+        Card from;
+        Card to;
+        if (fromCardId <= toCardId) {
+            from = lock(fromCardId, "Source card not found");
+            to = lock(toCardId, "Target card not found");
+        } else {
+            to = lock(toCardId, "Target card not found");
+            from = lock(fromCardId, "Source card not found");
+        }
+        lockWait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        TransferRules.apply(from, to, amount);
+        cardLedger.recordTransfer(fromCardId, toCardId, amount);
+    }
+
+    private Card lock(Long cardId, String notFoundMessage) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new RuntimeException(notFoundMessage));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+
+// Бизнес-проверки перевода и изменение балансов, общие для всех стратегий
+final class TransferRules {
+
+    private TransferRules() {
+    }
+
+    static void apply(Card from, Card to, BigDecimal amount) {
+        if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
+            throw new RuntimeException("Both cards must be ACTIVE for transfer");
+        }
+
+        if (!from.getOwner().getId().equals(to.getOwner().getId())) {
+            throw new RuntimeException("You can only transfer between your own cards");
+        }
+
+        if (from.getBalance().compareTo(amount) < 0) {
+            throw new RuntimeException("Not enough funds");
+        }
+
+        from.setBalance(from.getBalance().subtract(amount));
+        to.setBalance(to.getBalance().add(amount));
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.service;
+
+import java.math.BigDecimal;
+
+// Способ защиты перевода от конкурентных изменений баланса.
+// Выбирается на развёртывание через app.transfer.strategy
+public interface TransferStrategy {
+
+    void transfer(Long fromCardId, Long toCardId, BigDecimal amount);
+}
@@ -0,0 +1,315 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserImportResultDTO;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CustomUserDetailsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Массовый импорт пользователей (онбординг банков-партнёров) из CSV или NDJSON.
+// Тело читается построчно и обрабатывается порциями: на порцию один SELECT занятых username,
+// параллельное BCrypt-хеширование на собственном пуле и один JDBC-батч INSERT в короткой транзакции.
+// Отчёт по каждой строке пишется в ответ сразу после порции, весь файл в памяти не держится
+@Service
+public class UserImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    // ON CONFLICT: username, занятый параллельной регистрацией между SELECT и INSERT, даёт 0 строк, а не ошибку батча
+    private static final String INSERT_USER =
+            "INSERT INTO users (username, password, role) VALUES (?, ?, ?) ON CONFLICT (username) DO NOTHING";
+    private static final Set<String> ROLES = Set.of("USER", "ADMIN");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CustomUserDetailsService userDetailsService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final int chunkSize;
+    private final int parallelism;
+    private final Counter importedUsers;
+
+    // Отдельный пул и кодировщик: импорт не должен занимать пул BoundedPasswordEncoder, через который идут логины.
+    // Стойкость BCrypt та же, что у основного кодировщика, поэтому хеши взаимозаменяемы
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final ExecutorService hashingPool;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             CustomUserDetailsService userDetailsService,
+                             EntityManagerFactory entityManagerFactory,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.user-import.chunk-size:500}") int chunkSize,
+                             @Value("${app.user-import.hashing-parallelism:4}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.userDetailsService = userDetailsService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writerFor(UserImportResultDTO.class);
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.importedUsers = Counter.builder("user.import.created")
+                .register(meterRegistry);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashingPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // CSV: username,password[,role], первая строка может быть заголовком; NDJSON: {"username","password","role"}.
+    // Отчёт — NDJSON из UserImportResultDTO в порядке строк входа. Возвращает число созданных пользователей
+    public long importUsers(InputStream in, Format format, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Set<String> seen = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        long created = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && isCsvHeader(line))) {
+                continue;
+            }
+            chunk.add(parse(line, lineNumber, format));
+            if (chunk.size() == chunkSize) {
+                created += processChunk(chunk, seen, out);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            created += processChunk(chunk, seen, out);
+        }
+        out.flush();
+        log.info("User import finished: {} lines read, {} users created", lineNumber, created);
+        return created;
+    }
+
+    private long processChunk(List<Row> chunk, Set<String> seen, OutputStream out) {
+        UserImportResultDTO[] results = new UserImportResultDTO[chunk.size()];
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            if (row.error() != null) {
+                results[i] = result(row, UserImportResultDTO.INVALID, row.error());
+            } else if (!seen.add(row.username())) {
+                results[i] = result(row, UserImportResultDTO.DUPLICATE, "Username repeats in the import");
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        Set<String> existing = findExistingUsernames(candidates.stream().map(i -> chunk.get(i).username()).toList());
+        List<Integer> toInsert = new ArrayList<>(candidates.size());
+        for (int i : candidates) {
+            if (existing.contains(chunk.get(i).username())) {
+                results[i] = result(chunk.get(i), UserImportResultDTO.DUPLICATE, "User with username already exists");
+            } else {
+                toInsert.add(i);
+            }
+        }
+
+        long created = 0;
+        if (!toInsert.isEmpty()) {
+            List<Object[]> batch = hashInParallel(toInsert.stream().map(chunk::get).toList());
+            int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_USER, batch));
+            for (int k = 0; k < toInsert.size(); k++) {
+                Row row = chunk.get(toInsert.get(k));
+                // SUCCESS_NO_INFO (-2) драйвер тоже возвращает только для вставленной строки
+                if (counts[k] != 0) {
+                    results[toInsert.get(k)] = result(row, UserImportResultDTO.CREATED, null);
+                    userDetailsService.evict(row.username());
+                    created++;
+                } else {
+                    results[toInsert.get(k)] = result(row, UserImportResultDTO.DUPLICATE,
+                            "User with username already exists");
+                }
+            }
+            importedUsers.increment(created);
+            if (created > 0) {
+                // Вставка мимо Hibernate: кэш findByUsername мог запомнить, что этих пользователей нет
+                entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                        .evictQueryRegion(UserRepository.USERS_BY_USERNAME_REGION);
+            }
+        }
+
+        try {
+            for (UserImportResultDTO result : results) {
+                out.write(writer.writeValueAsBytes(result));
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return created;
+    }
+
+    // Один запрос на порцию вместо findByUsername на каждого пользователя
+    private Set<String> findExistingUsernames(List<String> usernames) {
+        if (usernames.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(usernames.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT username FROM users WHERE username IN (" + placeholders + ")",
+                String.class, usernames.toArray()));
+    }
+
+    // Параметры INSERT_USER: username, хеш пароля, роль. Порция делится на parallelism частей
+    private List<Object[]> hashInParallel(List<Row> rows) {
+        int sliceSize = Math.max(1, (rows.size() + parallelism - 1) / parallelism);
+        List<Future<List<Object[]>>> futures = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += sliceSize) {
+            List<Row> slice = rows.subList(from, Math.min(from + sliceSize, rows.size()));
+            futures.add(hashingPool.submit(() -> slice.stream()
+                    .map(row -> new Object[]{row.username(), passwordEncoder.encode(row.password()), row.role()})
+                    .toList()));
+        }
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        try {
+            for (Future<List<Object[]>> future : futures) {
+                batch.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("User import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+        return batch;
+    }
+
+    private Row parse(String line, long lineNumber, Format format) {
+        String username;
+        String password;
+        String role;
+        if (format == Format.NDJSON) {
+            try {
+                JsonNode node = objectMapper.readTree(line);
+                username = text(node, "username");
+                password = text(node, "password");
+                role = text(node, "role");
+            } catch (JsonProcessingException e) {
+                return Row.invalid(lineNumber, null, "Malformed JSON");
+            }
+        } else {
+            List<String> fields = splitCsv(line);
+            if (fields == null || fields.size() < 2 || fields.size() > 3) {
+                return Row.invalid(lineNumber, null, "Expected username,password[,role]");
+            }
+            username = fields.get(0);
+            password = fields.get(1);
+            role = fields.size() == 3 ? fields.get(2) : null;
+        }
+        // Те же правила, что у UserRegistrationDTO
+        if (username == null || username.isBlank() || username.length() < 3 || username.length() > 50) {
+            return Row.invalid(lineNumber, username, "Username must be 3-50 characters long");
+        }
+        if (password == null || password.length() < 6) {
+            return Row.invalid(lineNumber, username, "Password must be at least 6 characters long");
+        }
+        String finalRole = (role == null || role.isBlank()) ? "USER" : role.toUpperCase();
+        if (!ROLES.contains(finalRole)) {
+            return Row.invalid(lineNumber, username, "Unknown role: " + role);
+        }
+        return new Row(lineNumber, username, password, finalRole, null);
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase().startsWith("username,");
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // Поля CSV по RFC 4180 в пределах одной строки: "..." с "" внутри для кавычки. null — незакрытая кавычка
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static UserImportResultDTO result(Row row, String status, String error) {
+        return new UserImportResultDTO(row.line(), row.username(), status, error);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    // Разобранная строка входа; error != null — строка невалидна
+    private record Row(long line, String username, String password, String role, String error) {
+
+        static Row invalid(long line, String username, String error) {
+            return new Row(line, username, null, null, error);
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadFromReplica;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.TokenRevocationStore;
+import com.example.bankcards.util.CursorUtil;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -13,12 +21,18 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocationStore revocationStore;
+    private final CustomUserDetailsService userDetailsService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       TokenRevocationStore revocationStore, CustomUserDetailsService userDetailsService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.revocationStore = revocationStore;
+        this.userDetailsService = userDetailsService;
     }
 
+    @Transactional
     public User createUser(String username, String rawPassword, String role) {
         if (userRepository.findByUsername(username).isPresent()) {
             throw new RuntimeException("User with username already exists");
@@ -26,7 +40,9 @@ public class UserService {
         String encoded = passwordEncoder.encode(rawPassword);
         String finalRole = (role == null || role.isBlank()) ? "USER" : role.toUpperCase();
         User user = new User(username, encoded, finalRole);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        evictAfterCommit(username);
+        return saved;
     }
 
     // Поиск по ID
@@ -39,13 +55,36 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
-    // Запрос на всех пользователей
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    // Пользователи по курсору: after — курсор из X-Next-Cursor предыдущей страницы
+    @ReadFromReplica
+    @Transactional(readOnly = true)
+    public Slice<User> getUsersAfter(String after, int size) {
+        CursorUtil.checkPageSize(size);
+        return userRepository.findByIdGreaterThanOrderByIdAsc(CursorUtil.decode(after), PageRequest.of(0, size));
     }
 
-    // Удаление пользователя
+    // Удаление пользователя. Выданные ему токены отзываются вместе с удалением, в том числе при stateless-аутентификации;
+    // другие узлы узнают об отзыве при следующем обновлении TokenRevocationStore
+    @Transactional
     public void deleteUser(Long id) {
+        Optional<User> user = userRepository.findById(id);
+        user.ifPresent(u -> revocationStore.revokeAll(u.getUsername()));
         userRepository.deleteById(id);
+        user.ifPresent(u -> evictAfterCommit(u.getUsername()));
+    }
+
+    // Кэш UserDetails сбрасываем после коммита: логин, прошедший между сбросом и коммитом,
+    // вернул бы в кэш ещё не удалённую (или ещё не созданную) версию пользователя до истечения TTL
+    private void evictAfterCommit(String username) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userDetailsService.evict(username);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userDetailsService.evict(username);
+            }
+        });
     }
 }
@@ -0,0 +1,44 @@
+package com.example.bankcards.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+// HMAC номера карты ("blind index"): позволяет искать и проверять уникальность по индексу,
+// не расшифровывая таблицу и не завися от детерминированности шифра
+@Component
+public class BlindIndexUtil {
+
+    private static final String ALGO = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+
+    public BlindIndexUtil(@Value("${app.hmac-key}") String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGO);
+        this.mac = ThreadLocal.withInitial(this::initMac);
+    }
+
+    public String hash(String data) {
+        try {
+            return HexFormat.of().formatHex(mac.get().doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            mac.remove();
+            throw new RuntimeException("Ошибка вычисления HMAC", e);
+        }
+    }
+
+    private Mac initMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGO);
+            instance.init(key);
+            return instance;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка инициализации HMAC", e);
+        }
+    }
+}
@@ -1,39 +1,162 @@
 package com.example.bankcards.util;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 public class EncryptionUtil {
 
-    private final SecretKeySpec key;
     private static final String ALGO = "AES";
 
-    public EncryptionUtil(@Value("${app.aes-key}") String secret) {
-        this.key = new SecretKeySpec(secret.getBytes(), ALGO);
+    // Связка ключей: текущим шифруем, любым из связки можем расшифровать
+    private final Map<Integer, KeyEntry> keyring = new HashMap<>();
+    private final int currentKeyVersion;
+
+    public EncryptionUtil(String secret) {
+        this(secret, 1, "");
+    }
+
+    // app.aes-old-keys: предыдущие ключи в формате "1:key1,2:key2", нужны только на время ротации
+    @Autowired
+    public EncryptionUtil(@Value("${app.aes-key}") String secret,
+                          @Value("${app.aes-key-version:1}") int currentKeyVersion,
+                          @Value("${app.aes-old-keys:}") String oldKeys) {
+        this.currentKeyVersion = currentKeyVersion;
+        for (String entry : oldKeys.split(",")) {
+            if (entry.isBlank()) continue;
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Неверный формат app.aes-old-keys");
+            }
+            keyring.put(Integer.parseInt(parts[0]), new KeyEntry(parts[1]));
+        }
+        keyring.put(currentKeyVersion, new KeyEntry(secret));
+    }
+
+    public int getCurrentKeyVersion() {
+        return currentKeyVersion;
     }
 
     public String encrypt(String data) {
+        KeyEntry entry = current();
         try {
-            Cipher cipher = Cipher.getInstance(ALGO);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            return Base64.getEncoder().encodeToString(cipher.doFinal(data.getBytes()));
+            Cipher cipher = entry.encryptCipher.get();
+            return Base64.getEncoder().encodeToString(cipher.doFinal(data.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
+            entry.encryptCipher.remove();
             throw new RuntimeException("Ошибка шифрования", e);
         }
     }
 
     public String decrypt(String encrypted) {
+        return decrypt(encrypted, currentKeyVersion);
+    }
+
+    public String decrypt(String encrypted, int keyVersion) {
+        KeyEntry entry = entry(keyVersion);
         try {
-            Cipher cipher = Cipher.getInstance(ALGO);
-            cipher.init(Cipher.DECRYPT_MODE, key);
-            return new String(cipher.doFinal(Base64.getDecoder().decode(encrypted)));
+            Cipher cipher = entry.decryptCipher.get();
+            return new String(cipher.doFinal(Base64.getDecoder().decode(encrypted)), StandardCharsets.UTF_8);
         } catch (Exception e) {
+            entry.decryptCipher.remove();
             throw new RuntimeException("Ошибка расшифровки", e);
         }
     }
+
+    // Пакетное шифрование: один Cipher и один выходной буфер на весь список
+    public List<String> encryptAll(List<String> data) {
+        KeyEntry entry = current();
+        List<String> result = new ArrayList<>(data.size());
+        Cipher cipher = entry.encryptCipher.get();
+        byte[] out = new byte[0];
+        try {
+            for (String item : data) {
+                byte[] in = item.getBytes(StandardCharsets.UTF_8);
+                out = ensureCapacity(out, cipher.getOutputSize(in.length));
+                int len = cipher.doFinal(in, 0, in.length, out);
+                result.add(Base64.getEncoder().encodeToString(Arrays.copyOf(out, len)));
+            }
+        } catch (Exception e) {
+            entry.encryptCipher.remove();
+            throw new RuntimeException("Ошибка шифрования", e);
+        }
+        return result;
+    }
+
+    public List<String> decryptAll(List<String> encrypted) {
+        return decryptAll(encrypted, currentKeyVersion);
+    }
+
+    // Пакетная расшифровка: один Cipher и переиспользуемые буферы на весь список
+    public List<String> decryptAll(List<String> encrypted, int keyVersion) {
+        KeyEntry entry = entry(keyVersion);
+        List<String> result = new ArrayList<>(encrypted.size());
+        Cipher cipher = entry.decryptCipher.get();
+        byte[] in = new byte[0];
+        byte[] out = new byte[0];
+        try {
+            for (String item : encrypted) {
+                byte[] src = item.getBytes(StandardCharsets.ISO_8859_1);
+                in = ensureCapacity(in, src.length);
+                int inLen = Base64.getDecoder().decode(src, in);
+                out = ensureCapacity(out, cipher.getOutputSize(inLen));
+                int outLen = cipher.doFinal(in, 0, inLen, out);
+                result.add(new String(out, 0, outLen, StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            entry.decryptCipher.remove();
+            throw new RuntimeException("Ошибка расшифровки", e);
+        }
+        return result;
+    }
+
+    private KeyEntry current() {
+        return keyring.get(currentKeyVersion);
+    }
+
+    private KeyEntry entry(int keyVersion) {
+        KeyEntry entry = keyring.get(keyVersion);
+        if (entry == null) {
+            throw new RuntimeException("Неизвестная версия ключа: " + keyVersion);
+        }
+        return entry;
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int size) {
+        return buffer.length >= size ? buffer : new byte[Math.max(size, buffer.length * 2)];
+    }
+
+    // Cipher не потокобезопасен, поэтому для каждого ключа держим по одному инициализированному экземпляру на поток
+    private static final class KeyEntry {
+        private final SecretKeySpec key;
+        private final ThreadLocal<Cipher> encryptCipher;
+        private final ThreadLocal<Cipher> decryptCipher;
+
+        private KeyEntry(String secret) {
+            this.key = new SecretKeySpec(secret.getBytes(), ALGO);
+            this.encryptCipher = ThreadLocal.withInitial(() -> initCipher(Cipher.ENCRYPT_MODE));
+            this.decryptCipher = ThreadLocal.withInitial(() -> initCipher(Cipher.DECRYPT_MODE));
+        }
+
+        private Cipher initCipher(int mode) {
+            try {
+                Cipher cipher = Cipher.getInstance(ALGO);
+                cipher.init(mode, key);
+                return cipher;
+            } catch (Exception e) {
+                throw new RuntimeException("Ошибка инициализации шифра", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package com.example.bankcards;
+
+import com.example.bankcards.util.BlindIndexUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlindIndexUtilTest {
+
+    @Test
+    void hash_isDeterministicHex() {
+        BlindIndexUtil blindIndexUtil = new BlindIndexUtil("secret-one");
+
+        String hash = blindIndexUtil.hash("1234567812345678");
+
+        assertEquals(64, hash.length());
+        assertTrue(hash.matches("[0-9a-f]+"));
+        assertEquals(hash, blindIndexUtil.hash("1234567812345678"));
+        assertNotEquals(hash, blindIndexUtil.hash("1234567812345679"));
+    }
+
+    @Test
+    void hash_dependsOnKey() {
+        assertNotEquals(new BlindIndexUtil("secret-one").hash("1234567812345678"),
+                new BlindIndexUtil("secret-two").hash("1234567812345678"));
+    }
+}
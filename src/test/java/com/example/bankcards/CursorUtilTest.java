@@ -0,0 +1,24 @@
+package com.example.bankcards;
+
+import com.example.bankcards.util.CursorUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilTest {
+
+    @Test
+    void encodeDecode_roundTrip() {
+        String cursor = CursorUtil.encode(123456789L);
+
+        assertFalse(cursor.contains("123456789"));
+        assertEquals(123456789L, CursorUtil.decode(cursor));
+        assertEquals(0, CursorUtil.decode(null));
+    }
+
+    @Test
+    void decode_rejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> CursorUtil.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtil.decode("MTIz")); // "123" без префикса
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bankcards;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CustomUserDetailsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CustomUserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new CustomUserDetailsService(userRepository, meterRegistry, 100, 60);
+    }
+
+    @Test
+    void loadUserByUsername_secondCallHitsCache() {
+        when(userRepository.findByUsername("john")).thenReturn(Optional.of(new User("john", "hash", "USER")));
+
+        userDetailsService.loadUserByUsername("john");
+        UserDetails details = userDetailsService.loadUserByUsername("john");
+
+        assertEquals("hash", details.getPassword());
+        verify(userRepository, times(1)).findByUsername("john");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userDetails").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void loadUserByUsername_erasedCopyDoesNotAffectCache() {
+        when(userRepository.findByUsername("john")).thenReturn(Optional.of(new User("john", "hash", "USER")));
+
+        ((CredentialsContainer) userDetailsService.loadUserByUsername("john")).eraseCredentials();
+
+        assertEquals("hash", userDetailsService.loadUserByUsername("john").getPassword());
+    }
+
+    @Test
+    void evict_reloadsFromRepository() {
+        when(userRepository.findByUsername("john")).thenReturn(Optional.of(new User("john", "hash", "USER")));
+
+        userDetailsService.loadUserByUsername("john");
+        userDetailsService.evict("john");
+        userDetailsService.loadUserByUsername("john");
+
+        verify(userRepository, times(2)).findByUsername("john");
+    }
+
+    @Test
+    void loadUserByUsername_unknownUser_throwsAndIsNotCached() {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("ghost"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("ghost"));
+        verify(userRepository, times(2)).findByUsername("ghost");
+    }
+}
@@ -4,6 +4,8 @@ import com.example.bankcards.util.EncryptionUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EncryptionUtilTest {
@@ -27,6 +29,50 @@ class EncryptionUtilTest {
         assertEquals(original, decrypted);
     }
 
+    @Test
+    void encryptAllAndDecryptAll_matchSingleCalls() {
+        List<String> originals = List.of("1234567812345678", "8765432187654321", "1111222233334444");
+
+        List<String> encrypted = encryptionUtil.encryptAll(originals);
+        assertEquals(originals.size(), encrypted.size());
+        for (int i = 0; i < originals.size(); i++) {
+            assertEquals(encryptionUtil.encrypt(originals.get(i)), encrypted.get(i));
+        }
+
+        assertEquals(originals, encryptionUtil.decryptAll(encrypted));
+    }
+
+    @Test
+    void decrypt_afterFailure_stillWorks() {
+        String encrypted = encryptionUtil.encrypt("1234567812345678");
+
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt("invalid!"));
+        assertEquals("1234567812345678", encryptionUtil.decrypt(encrypted));
+    }
+
+    @Test
+    void decryptAll_invalidData_throws() {
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decryptAll(List.of("invalid!")));
+    }
+
+    @Test
+    void rotatedKeyring_decryptsOldVersionAndEncryptsWithCurrent() {
+        EncryptionUtil rotated = new EncryptionUtil("6543210987654321", 2, "1:1234567890123456");
+        String oldEncrypted = encryptionUtil.encrypt("1234567812345678");
+
+        assertEquals(2, rotated.getCurrentKeyVersion());
+        assertEquals("1234567812345678", rotated.decrypt(oldEncrypted, 1));
+        assertEquals(List.of("1234567812345678"), rotated.decryptAll(List.of(oldEncrypted), 1));
+        assertEquals("1234567812345678", rotated.decrypt(rotated.encrypt("1234567812345678")));
+        assertNotEquals(oldEncrypted, rotated.encrypt("1234567812345678"));
+    }
+
+    @Test
+    void decrypt_unknownKeyVersion_throws() {
+        String encrypted = encryptionUtil.encrypt("1234567812345678");
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt(encrypted, 5));
+    }
+
     @Test
     void encrypt_null_throws() {
         assertThrows(RuntimeException.class, () -> encryptionUtil.encrypt(null));
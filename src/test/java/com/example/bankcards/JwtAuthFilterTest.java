@@ -2,20 +2,30 @@ package com.example.bankcards;
 
 import com.example.bankcards.security.CustomUserDetailsService;
 import com.example.bankcards.security.JwtAuthFilter;
+import com.example.bankcards.security.JwtClaims;
 import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.security.TokenRevocationStore;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,12 +49,20 @@ class JwtAuthFilterTest {
     @Mock
     private UserDetails userDetails;
 
-    @InjectMocks
+    private TokenRevocationStore revocationStore;
+
     private JwtAuthFilter jwtAuthFilter;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        revocationStore = new TokenRevocationStore(mock(JdbcTemplate.class), 60_000);
+        jwtAuthFilter = new JwtAuthFilter(jwtUtil, userDetailsService, revocationStore, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     // не робит
@@ -75,10 +93,57 @@ class JwtAuthFilterTest {
     @Test
     void doFilterInternal_invalidToken_continuesChain() throws Exception {
         when(request.getHeader("Authorization")).thenReturn("Bearer invalid");
-        lenient().when(jwtUtil.extractUsername("invalid")).thenThrow(new RuntimeException("Invalid token"));
+        lenient().when(jwtUtil.verify("invalid")).thenThrow(new RuntimeException("Invalid token"));
+
+        jwtAuthFilter.doFilter(request, response, filterChain);
+
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_statelessMode_buildsPrincipalFromClaims() throws Exception {
+        jwtAuthFilter = new JwtAuthFilter(jwtUtil, userDetailsService, revocationStore, true);
+        when(request.getHeader("Authorization")).thenReturn("Bearer validtoken");
+        when(jwtUtil.verify("validtoken")).thenReturn(claims("john", "USER", Instant.now()));
+
+        jwtAuthFilter.doFilter(request, response, filterChain);
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(auth);
+        assertEquals("john", auth.getName());
+        assertTrue(auth.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_revokedToken_notAuthenticated() throws Exception {
+        jwtAuthFilter = new JwtAuthFilter(jwtUtil, userDetailsService, revocationStore, true);
+        when(request.getHeader("Authorization")).thenReturn("Bearer oldtoken");
+        when(jwtUtil.verify("oldtoken")).thenReturn(claims("john", "USER", Instant.now().minusSeconds(60)));
+        revocationStore.revokeAll("john");
+
+        jwtAuthFilter.doFilter(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_tokenIssuedInSameSecondAsRevocation_notAuthenticated() throws Exception {
+        jwtAuthFilter = new JwtAuthFilter(jwtUtil, userDetailsService, revocationStore, true);
+        when(request.getHeader("Authorization")).thenReturn("Bearer freshtoken");
+        // iat в JWT без долей секунды, как у только что выданного токена
+        when(jwtUtil.verify("freshtoken")).thenReturn(claims("john", "USER", Instant.now().truncatedTo(ChronoUnit.SECONDS)));
+        revocationStore.revokeAll("john");
 
         jwtAuthFilter.doFilter(request, response, filterChain);
 
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain, times(1)).doFilter(request, response);
     }
+
+    private JwtClaims claims(String username, String role, Instant issuedAt) {
+        return new JwtClaims(username, role, issuedAt, Instant.now().plusSeconds(600));
+    }
 }
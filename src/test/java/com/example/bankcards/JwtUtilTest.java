@@ -0,0 +1,65 @@
+package com.example.bankcards;
+
+import com.example.bankcards.security.JwtClaims;
+import com.example.bankcards.security.JwtUtil;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "mysecretkeymysecretkeymysecretkey123";
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 60_000, 100);
+    }
+
+    @Test
+    void verify_returnsClaims() {
+        String token = jwtUtil.generateToken("john", "USER");
+
+        JwtClaims claims = jwtUtil.verify(token);
+
+        assertEquals("john", claims.getUsername());
+        assertEquals("USER", claims.getRole());
+        assertFalse(claims.isExpired());
+        assertTrue(jwtUtil.validateToken(token, "john"));
+        assertFalse(jwtUtil.validateToken(token, "admin"));
+    }
+
+    @Test
+    void verify_secondCallServedFromCache() {
+        String token = jwtUtil.generateToken("john", "USER");
+
+        assertSame(jwtUtil.verify(token), jwtUtil.verify(token));
+    }
+
+    @Test
+    void verify_tamperedToken_throws() {
+        String token = jwtUtil.generateToken("john", "USER");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(tampered));
+    }
+
+    @Test
+    void verify_tokenFromOtherKey_throws() {
+        String foreign = new JwtUtil("othersecretothersecretothersecret123", 60_000, 100)
+                .generateToken("john", "ADMIN");
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(foreign));
+    }
+
+    @Test
+    void verify_expiredToken_throws() {
+        String expired = new JwtUtil(SECRET, -1_000, 100).generateToken("john", "USER");
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.verify(expired));
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.bankcards;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Планы запросов репозиториев на PostgreSQL со схемой из Liquibase: горячие запросы не должны читать таблицу целиком.
+// Проверяется SQL, который Hibernate действительно отправил при вызове метода репозитория (StatementInspector),
+// план строится через EXPLAIN (GENERIC_PLAN) с параметрами $1..$n. enable_seqscan = off заставляет планировщик
+// взять индекс, если он вообще подходит, поэтому Seq Scan в плане означает, что подходящего индекса нет.
+// Нужен Docker: тест помечен тегом postgres и запускается профилем mvn -Ppostgres test
+@Tag("postgres")
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+class QueryPlanTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SqlCapture sqlCapture;
+
+    private long ownerId;
+
+    @BeforeEach
+    void setUp() {
+        // 50 владельцев по 400 карт: каждая 10-я карта просрочена, каждая сотая заблокирована
+        jdbcTemplate.update("INSERT INTO users (username, password, role) " +
+                "SELECT 'user_' || g, 'pass', 'USER' FROM generate_series(1, 50) g");
+        jdbcTemplate.update("INSERT INTO cards (card_number_encrypted, card_number_last4, card_number_hash, " +
+                "expiration_date, status, balance, user_id) " +
+                "SELECT 'enc_' || g, lpad((g % 10000)::text, 4, '0'), md5(g::text), current_date + (g % 1500) - 300, " +
+                "CASE WHEN g % 10 = 0 THEN 'EXPIRED' WHEN g % 100 = 1 THEN 'BLOCKED' ELSE 'ACTIVE' END, 100, " +
+                "(SELECT id FROM users WHERE username = 'user_' || (g % 50 + 1)) " +
+                "FROM generate_series(1, 20000) g");
+        jdbcTemplate.execute("ANALYZE cards");
+        jdbcTemplate.execute("ANALYZE users");
+        ownerId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'user_7'", Long.class);
+        // SET LOCAL действует до конца тестовой транзакции
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        // Запрос из кэша второго уровня не дошёл бы до БД
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    // Имя запроса, вызов репозитория и индексы, хотя бы один из которых должен быть в плане.
+    // Проверка имени индекса нужна потому, что без Seq Scan планировщик может пройти весь первичный ключ
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("findByOwnerId",
+                        (RepositoryCall) (cards, users, owner) -> cards.findByOwnerId(owner),
+                        List.of("ix_cards_user_id_id")),
+                Arguments.of("findDtosByOwnerId",
+                        (RepositoryCall) (cards, users, owner) -> cards.findDtosByOwnerId(owner),
+                        List.of("ix_cards_user_id_id")),
+                Arguments.of("findDtosByOwnerUsername",
+                        (RepositoryCall) (cards, users, owner) -> cards.findDtosByOwnerUsername("user_7"),
+                        List.of("ix_cards_user_id_id")),
+                Arguments.of("findByStatus",
+                        (RepositoryCall) (cards, users, owner) ->
+                                cards.findByStatus(CardStatus.BLOCKED, PageRequest.of(0, 20)),
+                        List.of("ix_cards_status_id")),
+                Arguments.of("findDtoPageByStatus",
+                        (RepositoryCall) (cards, users, owner) ->
+                                cards.findDtoPageByStatus(CardStatus.BLOCKED, PageRequest.of(2, 100)),
+                        List.of("ix_cards_status_id")),
+                Arguments.of("findDtoSliceByStatusAfter",
+                        (RepositoryCall) (cards, users, owner) ->
+                                cards.findDtoSliceByStatusAfter(CardStatus.BLOCKED, 5000, PageRequest.of(0, 100)),
+                        List.of("ix_cards_status_id")),
+                Arguments.of("findDtoSliceAfter",
+                        (RepositoryCall) (cards, users, owner) ->
+                                cards.findDtoSliceAfter(5000, PageRequest.of(0, 100)),
+                        List.of("cards_pkey")),
+                Arguments.of("findByCardNumberHash",
+                        (RepositoryCall) (cards, users, owner) -> cards.findByCardNumberHash("hash_42"),
+                        List.of("ux_cards_card_number_hash")),
+                Arguments.of("expireRange",
+                        (RepositoryCall) (cards, users, owner) ->
+                                cards.expireRange(1, 1001, LocalDate.now(), CardStatus.EXPIRED),
+                        List.of("cards_pkey", "ix_cards_expiration_not_expired")),
+                Arguments.of("depositIfActive",
+                        (RepositoryCall) (cards, users, owner) -> cards.depositIfActive(2L, BigDecimal.TEN),
+                        List.of("cards_pkey")),
+                Arguments.of("transferIfAllowed",
+                        (RepositoryCall) (cards, users, owner) -> cards.transferIfAllowed(2L, 52L, BigDecimal.TEN),
+                        List.of("cards_pkey")),
+                Arguments.of("findByUsername",
+                        (RepositoryCall) (cards, users, owner) -> users.findByUsername("user_7"),
+                        List.of("users_username_key"))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQuery_usesIndex(String name, RepositoryCall call, List<String> expectedIndexes) {
+        List<String> statements = sqlCapture.capture(() -> call.run(cardRepository, userRepository, ownerId));
+        assertFalse(statements.isEmpty(), name + " did not reach the database");
+
+        List<String> plans = new ArrayList<>();
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("Seq Scan"), name + " reads a whole table:\n" + sql + "\n" + plan);
+            plans.add(plan);
+        }
+        assertTrue(plans.stream().anyMatch(plan -> expectedIndexes.stream().anyMatch(plan::contains)),
+                name + " does not use any of " + expectedIndexes + ":\n" + String.join("\n\n", plans));
+    }
+
+    // EXPLAIN без ANALYZE: UPDATE только планируется и не выполняется.
+    // GENERIC_PLAN (PostgreSQL 16) строит план без значений параметров, поэтому ? заменяются на $1..$n
+    private String explain(String sql) {
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        List<String> lines = jdbcTemplate.queryForList("EXPLAIN (GENERIC_PLAN) " + numbered, String.class);
+        return String.join("\n", lines);
+    }
+
+    @FunctionalInterface
+    interface RepositoryCall {
+        void run(CardRepository cards, UserRepository users, long ownerId);
+    }
+
+    // Запоминает SQL, который Hibernate отправляет в БД, пока выполняется capture
+    static class SqlCapture implements StatementInspector {
+
+        private final List<String> statements = new ArrayList<>();
+        private boolean capturing;
+
+        synchronized List<String> capture(Runnable action) {
+            statements.clear();
+            capturing = true;
+            try {
+                action.run();
+            } finally {
+                capturing = false;
+            }
+            return new ArrayList<>(statements);
+        }
+
+        @Override
+        public synchronized String inspect(String sql) {
+            if (capturing) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+    }
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        @Bean
+        SqlCapture sqlCapture() {
+            return new SqlCapture();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer sqlCaptureCustomizer(SqlCapture sqlCapture) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlCapture);
+        }
+    }
+}
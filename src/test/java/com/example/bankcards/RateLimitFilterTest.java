@@ -0,0 +1,99 @@
+package com.example.bankcards;
+
+import com.example.bankcards.security.RateLimitFilter;
+import com.example.bankcards.security.RateLimitRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RateLimitFilter(List.of(
+                new RateLimitRule("login", HttpMethod.POST, "/api/auth/login", 1, 2),
+                new RateLimitRule("transfer", HttpMethod.POST, "/api/cards/transfer", 1, 1)
+        ), 1000, clock::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void burstExceeded_returns429WithRetryAfter() throws Exception {
+        assertEquals(200, call("POST", "/api/auth/login", "10.0.0.1").getStatus());
+        assertEquals(200, call("POST", "/api/auth/login", "10.0.0.1").getStatus());
+
+        MockHttpServletResponse limited = call("POST", "/api/auth/login", "10.0.0.1");
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader("Retry-After"));
+
+        // другой IP не затронут
+        assertEquals(200, call("POST", "/api/auth/login", "10.0.0.2").getStatus());
+    }
+
+    @Test
+    void tokensRefillOverTime() throws Exception {
+        call("POST", "/api/auth/login", "10.0.0.1");
+        call("POST", "/api/auth/login", "10.0.0.1");
+        assertEquals(429, call("POST", "/api/auth/login", "10.0.0.1").getStatus());
+
+        clock.addAndGet(1_000_000_000L);
+
+        assertEquals(200, call("POST", "/api/auth/login", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void authenticatedRequests_limitedPerUser() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("john", null, List.of()));
+
+        assertEquals(200, call("POST", "/api/cards/transfer", "10.0.0.1").getStatus());
+        assertEquals(429, call("POST", "/api/cards/transfer", "10.0.0.2").getStatus());
+    }
+
+    @Test
+    void unmatchedRoute_notLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, call("GET", "/api/cards/my", "10.0.0.1").getStatus());
+        }
+        assertEquals(0, filter.trackedKeys());
+    }
+
+    @Test
+    void idleBuckets_areEvicted() throws Exception {
+        call("POST", "/api/auth/login", "10.0.0.1");
+        call("POST", "/api/auth/login", "10.0.0.2");
+        assertEquals(2, filter.trackedKeys());
+
+        clock.addAndGet(60_000_000_000L);
+        call("POST", "/api/auth/login", "10.0.0.3");
+
+        assertEquals(1, filter.trackedKeys());
+    }
+
+    private MockHttpServletResponse call(String method, String uri, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setServletPath(uri);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.bankcards;
+
+import com.example.bankcards.config.DataSourceRoutingConfig;
+import com.example.bankcards.config.ReplicaRoutingDataSource;
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.TokenRevocationStore;
+import com.example.bankcards.service.CardLedger;
+import com.example.bankcards.service.CardNumberAllocator;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferStrategy;
+import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+// Маршрутизация на двух экземплярах H2: основная БД и реплика с той же схемой, но своими данными.
+// По тому, чьи строки вернулись, видно, куда ушёл запрос. На реплику уходят только методы с @ReadFromReplica
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "app.datasource.replica-urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "app.datasource.replica-lag-query=SELECT lag_seconds FROM replica_lag",
+        "app.datasource.replica-max-lag-ms=5000",
+        "app.datasource.replica-check-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DataSourceRoutingConfig.class, CardService.class, UserService.class, ReplicaRoutingTest.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final String INSERT_CARD =
+            "INSERT INTO cards (id, card_number_encrypted, card_number_last4, expiration_date, status, " +
+            "balance, user_id, version, key_version) VALUES (1000, 'encrypted', '4242', DATE '2030-01-01', 'ACTIVE', 10, ?, 0, 1)";
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @MockBean
+    private BlindIndexUtil blindIndexUtil;
+
+    @MockBean
+    private TransferStrategy transferStrategy;
+
+    @MockBean
+    private CardLedger cardLedger;
+
+    @MockBean
+    private CardNumberAllocator cardNumberAllocator;
+
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    @MockBean
+    private TokenRevocationStore revocationStore;
+
+    @MockBean
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "bank_user", "bank_password"));
+
+        // Схему реплики копируем с основной БД, которую создал Hibernate
+        replica.execute("DROP ALL OBJECTS");
+        primary.queryForList("SCRIPT NODATA", String.class).forEach(replica::execute);
+        replica.execute("CREATE TABLE replica_lag (lag_seconds DOUBLE PRECISION)");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+
+        userRepository.save(new User("on-primary", "pass", "USER"));
+        replica.update("INSERT INTO users (id, username, password, role) VALUES (1000, 'on-replica', 'pass', 'USER')");
+        replica.update(INSERT_CARD, 1000L);
+        routingDataSource.checkReplicas();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.update("DELETE FROM cards");
+        primary.update("DELETE FROM users");
+    }
+
+    @Test
+    void readOnlyTransactions_goToReplica() {
+        assertEquals(List.of("on-replica"), firstUsersPage());
+
+        // Списки карт, которые читает CardController
+        assertEquals(List.of("on-replica"), owners(cardService.getUserCards(1000L)));
+        assertEquals(List.of("on-replica"), owners(cardService.getCardsByUsername("on-replica")));
+        assertEquals(List.of("on-replica"), owners(cardService.getAllCards(0, 20, null)));
+        assertEquals(List.of("on-replica"), owners(cardService.getAllCardsAfter(null, 20, null).getContent()));
+    }
+
+    @Test
+    void readWriteTransactions_stayOnPrimary() {
+        List<User> users = new TransactionTemplate(transactionManager).execute(status -> userRepository.findAll());
+        assertEquals(List.of("on-primary"), usernames(users));
+
+        // Карта 1000 есть в обеих БД, но у разных владельцев: проверка владельца проходит только на основной
+        Long ownerId = primary.queryForObject("SELECT id FROM users WHERE username = 'on-primary'", Long.class);
+        primary.update(INSERT_CARD, ownerId);
+        cardService.requestBlock(1000L, "on-primary");
+        assertEquals("BLOCK_REQUESTED", primary.queryForObject("SELECT status FROM cards WHERE id = 1000", String.class));
+    }
+
+    @Test
+    void readOnlyWorkWithoutOptIn_staysOnPrimary() {
+        // SimpleJpaRepository читает в readOnly-транзакции, но метод не отмечен @ReadFromReplica
+        assertEquals(List.of("on-primary"), usernames(userRepository.findAll()));
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        assertEquals(List.of("on-primary"), usernames(readOnly.execute(status -> userRepository.findAll())));
+    }
+
+    @Test
+    void writePathReads_seeRowsMissingOnReplica() {
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+
+        // Проверка дубликата идёт на основную БД: на реплике этого пользователя ещё нет
+        RuntimeException duplicate = assertThrows(RuntimeException.class,
+                () -> userService.createUser("on-primary", "pass", "USER"));
+        assertEquals("User with username already exists", duplicate.getMessage());
+
+        Long ownerId = primary.queryForObject("SELECT id FROM users WHERE username = 'on-primary'", Long.class);
+        primary.update(INSERT_CARD.replace("1000", "2000"), ownerId);
+        cardService.deleteCard(2000L);
+        assertEquals(0, primary.queryForObject("SELECT COUNT(*) FROM cards WHERE id = 2000", Integer.class));
+
+        userService.deleteUser(ownerId);
+        assertEquals(0, primary.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    // Чтение с реплики сразу после пополнения видит старый баланс, но не кладёт его в кэш второго уровня:
+    // транзакции на основной БД читают актуальные баланс и @Version
+    @Test
+    void replicaReads_doNotFillSecondLevelCache() {
+        Long ownerId = primary.queryForObject("SELECT id FROM users WHERE username = 'on-primary'", Long.class);
+        primary.update(INSERT_CARD, ownerId);
+        primary.update("UPDATE cards SET balance = 50, version = 1 WHERE id = 1000");
+        entityManagerFactory.getCache().evict(Card.class);
+
+        assertEquals(0, BigDecimal.TEN.compareTo(cardService.getBalance(1000L)));
+        assertFalse(entityManagerFactory.getCache().contains(Card.class, 1000L));
+
+        CardDTO blocked = cardService.blockCard(1000L);
+        assertEquals("BLOCKED", blocked.getStatus());
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(blocked.getBalance()));
+        assertEquals(2, primary.queryForObject("SELECT version FROM cards WHERE id = 1000", Integer.class));
+    }
+
+    @Test
+    void laggingReplica_readsFallBackToPrimaryUntilItCatchesUp() {
+        replica.update("UPDATE replica_lag SET lag_seconds = 60");
+        routingDataSource.checkReplicas();
+
+        assertEquals(List.of("on-primary"), firstUsersPage());
+        assertEquals(60.0, meterRegistry.get("datasource.replica.lag").gauge().value());
+        assertEquals(0.0, meterRegistry.get("datasource.replica.healthy").gauge().value());
+        assertTrue(meterRegistry.get("datasource.replica.fallbacks").counter().count() >= 1);
+
+        replica.update("UPDATE replica_lag SET lag_seconds = 1");
+        routingDataSource.checkReplicas();
+
+        assertEquals(List.of("on-replica"), firstUsersPage());
+    }
+
+    @Test
+    void failedHealthCheck_readsFallBackToPrimary() {
+        replica.execute("DROP TABLE replica_lag");
+        routingDataSource.checkReplicas();
+
+        assertEquals(List.of("on-primary"), firstUsersPage());
+        assertTrue(Double.isNaN(meterRegistry.get("datasource.replica.lag").gauge().value()));
+    }
+
+    // Первая страница GET /api/users
+    private List<String> firstUsersPage() {
+        return usernames(userService.getUsersAfter(null, 20).getContent());
+    }
+
+    private static List<String> owners(List<CardDTO> cards) {
+        return cards.stream().map(CardDTO::getOwnerUsername).toList();
+    }
+
+    private static List<String> usernames(List<User> users) {
+        return users.stream().map(User::getUsername).toList();
+    }
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
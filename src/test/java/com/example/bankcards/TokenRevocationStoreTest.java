@@ -0,0 +1,70 @@
+package com.example.bankcards;
+
+import com.example.bankcards.security.JwtClaims;
+import com.example.bankcards.security.TokenRevocationStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest(properties = "spring.liquibase.enabled=false")
+class TokenRevocationStoreTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TokenRevocationStore nodeA;
+    private TokenRevocationStore nodeB;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS token_revocations (username VARCHAR(255) PRIMARY KEY, " +
+                "not_before TIMESTAMP WITH TIME ZONE NOT NULL)");
+        nodeA = new TokenRevocationStore(jdbcTemplate, 60_000);
+        nodeB = new TokenRevocationStore(jdbcTemplate, 60_000);
+    }
+
+    @Test
+    void revokeAll_visibleToOtherNodeAfterRefresh() {
+        JwtClaims oldToken = claims("john", Instant.now().minusSeconds(30));
+        nodeA.revokeAll("john");
+
+        assertTrue(nodeA.isRevoked(oldToken));
+        nodeB.refresh();
+        assertTrue(nodeB.isRevoked(oldToken));
+        // Токен, выпущенный после отзыва, действует
+        assertFalse(nodeB.isRevoked(claims("john", Instant.now().plusSeconds(5))));
+        assertFalse(nodeB.isRevoked(claims("jane", Instant.now().minusSeconds(30))));
+    }
+
+    @Test
+    void revokeAll_twice_keepsOneRow() {
+        nodeA.revokeAll("john");
+        nodeB.revokeAll("john");
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM token_revocations WHERE username = 'john'", Integer.class));
+    }
+
+    @Test
+    void refresh_deletesRevocationsOlderThanTokenLifetime() {
+        jdbcTemplate.update("INSERT INTO token_revocations (username, not_before) VALUES (?, ?)",
+                "old", Timestamp.from(Instant.now().minusSeconds(120)));
+
+        nodeA.refresh();
+
+        assertFalse(nodeA.isRevoked(claims("old", Instant.now().minusSeconds(300))));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM token_revocations WHERE username = 'old'", Integer.class));
+    }
+
+    private JwtClaims claims(String username, Instant issuedAt) {
+        return new JwtClaims(username, "USER", issuedAt, Instant.now().plusSeconds(600));
+    }
+}
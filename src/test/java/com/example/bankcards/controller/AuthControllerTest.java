@@ -12,9 +12,10 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -61,16 +62,16 @@ class AuthControllerTest {
         dto.setUsername("john");
         dto.setPassword("123456");
 
-        User user = new User("john", "encodedPass", "USER");
-
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
-                .thenReturn(mock(org.springframework.security.core.Authentication.class));
-        when(userService.getUserByUsername("john")).thenReturn(Optional.of(user));
+                .thenReturn(new UsernamePasswordAuthenticationToken("john", null,
+                        List.of(new SimpleGrantedAuthority("ROLE_USER"))));
         when(jwtUtil.generateToken("john", "USER")).thenReturn("mockToken");
 
         ResponseEntity<?> response = authController.login(dto);
 
         assertEquals(200, response.getStatusCodeValue());
         assertTrue(((Map<?, ?>) response.getBody()).containsKey("token"));
+        // роль берётся из результата аутентификации, повторного запроса пользователя нет
+        verifyNoInteractions(userService);
     }
 }
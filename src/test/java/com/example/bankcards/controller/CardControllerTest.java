@@ -1,21 +1,30 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardLookupRequest;
 import com.example.bankcards.dto.DepositRequest;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import com.example.bankcards.util.CursorUtil;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 class CardControllerTest {
@@ -23,6 +32,9 @@ class CardControllerTest {
     @Mock
     private CardService cardService;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
     @Mock
     private Authentication authentication;
 
@@ -35,6 +47,9 @@ class CardControllerTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         cardDTO = new CardDTO();
+        when(authentication.getName()).thenReturn("john");
+        when(idempotencyService.execute(anyString(), any(), anyString(), any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(4).get());
     }
 
     @Test
@@ -47,6 +62,27 @@ class CardControllerTest {
         assertEquals(cardDTO, response.getBody());
     }
 
+    @Test
+    void lookupCard_readsNumberFromBody() {
+        CardLookupRequest request = new CardLookupRequest();
+        request.setCardNumber("4000001234567899");
+        when(cardService.findByCardNumber("4000001234567899")).thenReturn(Optional.of(cardDTO));
+
+        ResponseEntity<CardDTO> response = cardController.lookupCard(request);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(cardDTO, response.getBody());
+    }
+
+    @Test
+    void lookupCard_unknownNumber_notFound() {
+        CardLookupRequest request = new CardLookupRequest();
+        request.setCardNumber("4000001234567899");
+        when(cardService.findByCardNumber("4000001234567899")).thenReturn(Optional.empty());
+
+        assertEquals(404, cardController.lookupCard(request).getStatusCodeValue());
+    }
+
     @Test
     void getMyCards_success() {
         when(authentication.getName()).thenReturn("john");
@@ -58,6 +94,17 @@ class CardControllerTest {
         assertEquals(1, response.getBody().size());
     }
 
+    @Test
+    void getAllCards_returnsNextCursorHeader() {
+        CardDTO last = new CardDTO(7L, "**** **** **** 1234", "ACTIVE", BigDecimal.ONE, 1L, "john");
+        when(cardService.getAllCardsAfter(null, 1, null)).thenReturn(new SliceImpl<>(List.of(last), PageRequest.of(0, 1), true));
+
+        ResponseEntity<List<CardDTO>> response = cardController.getAllCards(0, 1, null, null);
+
+        assertEquals(List.of(last), response.getBody());
+        assertEquals(CursorUtil.encode(7L), response.getHeaders().getFirst(CursorUtil.NEXT_CURSOR_HEADER));
+    }
+
     @Test
     void deposit_success() {
         DepositRequest request = new DepositRequest();
@@ -65,12 +112,23 @@ class CardControllerTest {
 
         when(cardService.deposit(1L, BigDecimal.valueOf(100))).thenReturn(cardDTO);
 
-        ResponseEntity<CardDTO> response = cardController.deposit(1L, request);
+        ResponseEntity<CardDTO> response = cardController.deposit(1L, request, null, authentication);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(cardDTO, response.getBody());
     }
 
+    @Test
+    void deposit_withIdempotencyKey_passesKeyAndRequest() {
+        DepositRequest request = new DepositRequest();
+        request.setAmount(BigDecimal.valueOf(100));
+        when(cardService.deposit(1L, BigDecimal.valueOf(100))).thenReturn(cardDTO);
+
+        cardController.deposit(1L, request, "key-1", authentication);
+
+        verify(idempotencyService).execute(eq("john"), eq("key-1"), eq("deposit:1:100"), eq(CardDTO.class), any());
+    }
+
     @Test
     void transfer_success() {
         TransferRequest request = new TransferRequest();
@@ -78,9 +136,10 @@ class CardControllerTest {
         request.setToCardId(2L);
         request.setAmount(BigDecimal.valueOf(50));
 
-        ResponseEntity<String> response = cardController.transfer(request);
+        ResponseEntity<String> response = cardController.transfer(request, null, authentication);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("Перевод успешно выполнен", response.getBody());
+        verify(cardService).transfer(1L, 2L, BigDecimal.valueOf(50));
     }
 }
@@ -0,0 +1,94 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AtomicSqlTransferStrategyTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardLedger cardLedger;
+
+    private AtomicSqlTransferStrategy strategy;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        strategy = new AtomicSqlTransferStrategy(cardRepository, cardLedger);
+        user = new User("john", "pass", "USER");
+        user.setId(1L);
+    }
+
+    @Test
+    void transfer_success_isSingleStatement() {
+        when(cardRepository.transferIfAllowed(1L, 2L, BigDecimal.TEN)).thenReturn(2);
+
+        strategy.transfer(1L, 2L, BigDecimal.TEN);
+
+        verify(cardRepository).transferIfAllowed(1L, 2L, BigDecimal.TEN);
+        verifyNoMoreInteractions(cardRepository);
+        verify(cardLedger).recordTransfer(1L, 2L, BigDecimal.TEN);
+    }
+
+    @Test
+    void transfer_notEnoughFunds_throws() {
+        when(cardRepository.transferIfAllowed(1L, 2L, BigDecimal.TEN)).thenReturn(1);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card(1L, 5, CardStatus.ACTIVE, user)));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(card(2L, 0, CardStatus.ACTIVE, user)));
+
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> strategy.transfer(1L, 2L, BigDecimal.TEN));
+        assertEquals("Not enough funds", ex.getMessage());
+        verifyNoInteractions(cardLedger);
+    }
+
+    @Test
+    void transfer_blockedCard_throws() {
+        when(cardRepository.transferIfAllowed(1L, 2L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card(1L, 100, CardStatus.ACTIVE, user)));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(card(2L, 0, CardStatus.BLOCKED, user)));
+
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> strategy.transfer(1L, 2L, BigDecimal.TEN));
+        assertEquals("Both cards must be ACTIVE for transfer", ex.getMessage());
+    }
+
+    @Test
+    void transfer_foreignCard_throws() {
+        User other = new User("jane", "pass", "USER");
+        other.setId(2L);
+        when(cardRepository.transferIfAllowed(1L, 2L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card(1L, 100, CardStatus.ACTIVE, user)));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(card(2L, 0, CardStatus.ACTIVE, other)));
+
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> strategy.transfer(1L, 2L, BigDecimal.TEN));
+        assertEquals("You can only transfer between your own cards", ex.getMessage());
+    }
+
+    private Card card(Long id, long balance, CardStatus status, User owner) {
+        Card card = new Card();
+        card.setId(id);
+        card.setBalance(BigDecimal.valueOf(balance));
+        card.setStatus(status);
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setOwner(owner);
+        return card;
+    }
+}
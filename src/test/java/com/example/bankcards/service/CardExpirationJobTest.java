@@ -0,0 +1,171 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class CardExpirationJobTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 1, 15);
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockBean
+    private JobLeaseService jobLeaseService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardExpirationJob job;
+    private User john;
+    private int cards;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(jobLeaseService.tryAcquire(eq(CardExpirationJob.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        // Маленькие порции, чтобы карты попали в несколько диапазонов id
+        job = new CardExpirationJob(cardRepository, new TransactionTemplate(transactionManager), jobLeaseService,
+                meterRegistry, 3, 300);
+        john = entityManager.persist(new User("john", "pass", "USER"));
+    }
+
+    @Test
+    void run_expiresOnlyOverdueCardsAcrossChunks() {
+        Long overdueActive = persistCard(CardStatus.ACTIVE, TODAY.minusDays(1));
+        Long overdueBlocked = persistCard(CardStatus.BLOCKED, TODAY.minusYears(1));
+        Long expiresToday = persistCard(CardStatus.ACTIVE, TODAY);
+        Long alreadyExpired = persistCard(CardStatus.EXPIRED, TODAY.minusDays(10));
+        for (int i = 0; i < 5; i++) {
+            persistCard(CardStatus.ACTIVE, TODAY.plusYears(1));
+        }
+        Long lastOverdue = persistCard(CardStatus.ACTIVE, TODAY.minusDays(3));
+        entityManager.flush();
+        entityManager.clear();
+
+        long expired = job.run(TODAY);
+        entityManager.clear();
+
+        assertEquals(3, expired);
+        assertEquals(CardStatus.EXPIRED, statusOf(overdueActive));
+        assertEquals(CardStatus.EXPIRED, statusOf(overdueBlocked));
+        assertEquals(CardStatus.EXPIRED, statusOf(lastOverdue));
+        assertEquals(CardStatus.ACTIVE, statusOf(expiresToday));
+        assertEquals(CardStatus.EXPIRED, statusOf(alreadyExpired));
+        assertEquals(1L, entityManager.find(Card.class, overdueActive).getVersion());
+        assertEquals(3.0, meterRegistry.counter("card.expiration.rows").count());
+    }
+
+    @Test
+    void run_withoutCards_doesNothing() {
+        assertEquals(0, job.run(TODAY));
+    }
+
+    @Test
+    void scheduledRun_leaseHeldByAnotherNode_skips() {
+        persistCard(CardStatus.ACTIVE, LocalDate.now().minusDays(1));
+        when(jobLeaseService.tryAcquire(eq(CardExpirationJob.LEASE_NAME), any(Duration.class))).thenReturn(false);
+
+        job.scheduledRun();
+
+        assertEquals(0.0, meterRegistry.counter("card.expiration.rows").count());
+        verify(jobLeaseService, never()).release(any());
+    }
+
+    @Test
+    void scheduledRun_keepsLeaseAndRecordsCompletion() {
+        when(jobLeaseService.currentDate()).thenReturn(TODAY);
+        persistCard(CardStatus.ACTIVE, TODAY.minusDays(1));
+
+        job.scheduledRun();
+
+        assertEquals(1.0, meterRegistry.counter("card.expiration.rows").count());
+        verify(jobLeaseService).markCompleted(CardExpirationJob.LEASE_NAME, TODAY);
+        verify(jobLeaseService, never()).release(any());
+    }
+
+    @Test
+    void scheduledRun_alreadyCompletedToday_skips() {
+        when(jobLeaseService.currentDate()).thenReturn(TODAY);
+        when(jobLeaseService.isCompleted(CardExpirationJob.LEASE_NAME, TODAY)).thenReturn(true);
+        persistCard(CardStatus.ACTIVE, TODAY.minusDays(1));
+
+        job.scheduledRun();
+
+        assertEquals(0.0, meterRegistry.counter("card.expiration.rows").count());
+        verify(jobLeaseService, never()).markCompleted(any(), any());
+    }
+
+    @Test
+    void scheduledRun_leaseLostMidRun_leavesDayOpenForNextRun() {
+        when(jobLeaseService.currentDate()).thenReturn(TODAY);
+        Long first = persistCard(CardStatus.ACTIVE, TODAY.minusDays(1));
+        for (int i = 0; i < 5; i++) {
+            persistCard(CardStatus.ACTIVE, TODAY.plusYears(1));
+        }
+        Long last = persistCard(CardStatus.ACTIVE, TODAY.minusDays(1));
+        entityManager.flush();
+        entityManager.clear();
+        // Аренда взята, после первой порции продлить её не удалось
+        when(jobLeaseService.tryAcquire(eq(CardExpirationJob.LEASE_NAME), any(Duration.class)))
+                .thenReturn(true, false);
+
+        job.scheduledRun();
+        entityManager.clear();
+
+        assertEquals(CardStatus.EXPIRED, statusOf(first));
+        assertEquals(CardStatus.ACTIVE, statusOf(last));
+        verify(jobLeaseService, never()).markCompleted(any(), any());
+
+        // Следующий запуск по расписанию доделывает оставшиеся диапазоны и отмечает день
+        when(jobLeaseService.tryAcquire(eq(CardExpirationJob.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        job.scheduledRun();
+        entityManager.clear();
+
+        assertEquals(CardStatus.EXPIRED, statusOf(last));
+        verify(jobLeaseService).markCompleted(CardExpirationJob.LEASE_NAME, TODAY);
+    }
+
+    private Long persistCard(CardStatus status, LocalDate expirationDate) {
+        Card card = new Card();
+        card.setCardNumberEncrypted("encrypted_" + (++cards));
+        card.setCardNumberLast4("1234");
+        card.setOwner(john);
+        card.setStatus(status);
+        card.setBalance(BigDecimal.ZERO);
+        card.setExpirationDate(expirationDate);
+        return entityManager.persistAndGetId(card, Long.class);
+    }
+
+    private CardStatus statusOf(Long id) {
+        return entityManager.find(Card.class, id).getStatus();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CardExportServiceTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void exportAll_streamsMaskedNdjsonWithoutManagedEntities() throws Exception {
+        User john = entityManager.persist(new User("john", "pass", "USER"));
+        for (int i = 0; i < 25; i++) {
+            Card card = new Card();
+            card.setCardNumberEncrypted("encrypted_" + i);
+            card.setCardNumberLast4(String.format("%04d", i));
+            card.setOwner(john);
+            card.setStatus(CardStatus.ACTIVE);
+            card.setBalance(BigDecimal.valueOf(i));
+            card.setExpirationDate(LocalDate.now().plusYears(1));
+            entityManager.persist(card);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        CardExportService exportService = new CardExportService(cardRepository, transactionManager, objectMapper);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = exportService.exportAll(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(25, exported);
+        assertEquals(25, lines.length);
+        JsonNode last = objectMapper.readTree(lines[24]);
+        assertEquals("**** **** **** 0024", last.get("maskedNumber").asText());
+        assertEquals("john", last.get("ownerUsername").asText());
+        assertFalse(lines[24].contains("encrypted_"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
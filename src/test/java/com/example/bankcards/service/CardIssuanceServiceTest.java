@@ -0,0 +1,148 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardIssueRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Пакетный выпуск на H2: INSERT карт идут JDBC-батчами, число запросов не растёт с размером пакета
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50"
+})
+class CardIssuanceServiceTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil("1234567890123456");
+    private CardIssuanceService issuanceService;
+    private User john;
+    private User jane;
+
+    @BeforeEach
+    void setUp() {
+        BlindIndexUtil blindIndexUtil = new BlindIndexUtil("hmac-secret");
+        CardNumberAllocator allocator = new CardNumberAllocator(cardRepository, blindIndexUtil,
+                new SimpleMeterRegistry(), "400000-400099", 16, 100, 50);
+        issuanceService = new CardIssuanceService(cardRepository, userRepository, encryptionUtil,
+                blindIndexUtil, allocator, 3);
+        john = entityManager.persist(new User("john", "pass", "USER"));
+        jane = entityManager.persist(new User("jane", "pass", "USER"));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        issuanceService.shutdown();
+    }
+
+    @Test
+    void issueCards_insertsInBatchesAndEncryptsOnce() {
+        List<CardIssueRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            requests.add(request(i % 2 == 0 ? john.getId() : jane.getId(), String.format("4000%012d", i)));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<CardDTO> issued = issuanceService.issueCards(requests);
+        entityManager.flush();
+
+        assertEquals(120, issued.size());
+        assertEquals("**** **** **** 0119", issued.get(119).getMaskedNumber());
+        assertEquals("jane", issued.get(119).getOwnerUsername());
+        // SELECT владельцев, SELECT хешей, 3 nextval по 50 id и 3 батча INSERT вместо 120 отдельных
+        assertTrue(statistics.getPrepareStatementCount() <= 10,
+                "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(120, statistics.getEntityInsertCount());
+
+        entityManager.clear();
+        Card card = entityManager.find(Card.class, issued.get(7).getId());
+        assertEquals("4000000000000007", encryptionUtil.decrypt(card.getCardNumberEncrypted()));
+        assertEquals(encryptionUtil.getCurrentKeyVersion(), card.getKeyVersion());
+    }
+
+    @Test
+    void issueCards_existingNumber_issuesNothing() {
+        issuanceService.issueCards(List.of(request(john.getId(), "4000000000000001")));
+        entityManager.flush();
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> issuanceService.issueCards(List.of(
+                request(jane.getId(), "4000000000000002"),
+                request(jane.getId(), "4000000000000001"))));
+
+        assertEquals("Card with this number already exists", ex.getMessage());
+        assertEquals(1, cardRepository.count());
+    }
+
+    @Test
+    void issueCards_withoutNumbers_allocatesLuhnValidNumbers() {
+        CardIssueRequest first = request(john.getId(), null);
+        CardIssueRequest second = request(jane.getId(), null);
+
+        List<CardDTO> issued = issuanceService.issueCards(List.of(first, second, request(john.getId(), "4000000000000001")));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(3, cardRepository.count());
+        for (CardDTO dto : issued.subList(0, 2)) {
+            String number = encryptionUtil.decrypt(entityManager.find(Card.class, dto.getId()).getCardNumberEncrypted());
+            assertTrue(number.startsWith("4000"), number);
+            assertTrue(CardNumberAllocator.isLuhnValid(number), number);
+        }
+    }
+
+    @Test
+    void issueCards_unknownUser_throws() {
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> issuanceService.issueCards(List.of(request(-1L, "4000000000000001"))));
+
+        assertEquals("User not found: -1", ex.getMessage());
+    }
+
+    @Test
+    void issueCards_repeatedNumberInBatch_throws() {
+        assertThrows(RuntimeException.class, () -> issuanceService.issueCards(List.of(
+                request(john.getId(), "4000000000000001"),
+                request(jane.getId(), "4000000000000001"))));
+    }
+
+    private static CardIssueRequest request(Long userId, String cardNumber) {
+        CardIssueRequest request = new CardIssueRequest();
+        request.setUserId(userId);
+        request.setCardNumber(cardNumber);
+        return request;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.BlindIndexUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class CardNumberAllocatorTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    private final BlindIndexUtil blindIndexUtil = new BlindIndexUtil("hmac-secret");
+    private CardNumberAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(cardRepository.findExistingCardNumberHashes(anyCollection())).thenReturn(List.of());
+        allocator = new CardNumberAllocator(cardRepository, blindIndexUtil, new SimpleMeterRegistry(),
+                "400000-400009, 51234567", 16, 40, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.shutdown();
+    }
+
+    @Test
+    void generate_producesLuhnValidNumbersFromBinRanges() {
+        for (int i = 0; i < 1000; i++) {
+            String number = allocator.generate();
+            assertEquals(16, number.length());
+            assertTrue(CardNumberAllocator.isLuhnValid(number), number);
+            assertTrue(number.matches("40000\\d{11}|51234567\\d{8}"), number);
+        }
+    }
+
+    @Test
+    void luhn_knownNumbers() {
+        assertTrue(CardNumberAllocator.isLuhnValid("4111111111111111"));
+        assertTrue(CardNumberAllocator.isLuhnValid("79927398713"));
+        assertFalse(CardNumberAllocator.isLuhnValid("4111111111111112"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void generateUnique_replacesNumbersAlreadyInUse() {
+        List<Collection<String>> checked = new ArrayList<>();
+        when(cardRepository.findExistingCardNumberHashes(anyCollection())).thenAnswer(inv -> {
+            Collection<String> hashes = new ArrayList<>(inv.getArgument(0, Collection.class));
+            checked.add(hashes);
+            // В первой порции два номера уже заняты
+            return checked.size() == 1 ? hashes.stream().limit(2).toList() : List.of();
+        });
+
+        List<CardNumberAllocator.AllocatedNumber> numbers = allocator.generateUnique(10);
+
+        assertEquals(10, numbers.size());
+        assertEquals(2, checked.size());
+        assertEquals(2, checked.get(1).size());
+        Set<String> taken = new HashSet<>(checked.get(0).stream().limit(2).toList());
+        for (CardNumberAllocator.AllocatedNumber number : numbers) {
+            assertFalse(taken.contains(number.hash()));
+            assertEquals(blindIndexUtil.hash(number.number()), number.hash());
+        }
+    }
+
+    @Test
+    void next_takesPrefilledNumbersWithoutDatabase() {
+        allocator.refill();
+        verify(cardRepository, times(2)).findExistingCardNumberHashes(anyCollection());
+        clearInvocations(cardRepository);
+
+        List<CardNumberAllocator.AllocatedNumber> numbers = allocator.next(25);
+
+        assertEquals(25, new HashSet<>(numbers).size());
+        verify(cardRepository, never()).findExistingCardNumberHashes(anyCollection());
+    }
+
+    @Test
+    void next_emptyBuffer_generatesOnCallerThread() {
+        List<CardNumberAllocator.AllocatedNumber> numbers = allocator.next(5);
+
+        assertEquals(5, numbers.size());
+        verify(cardRepository, atLeastOnce()).findExistingCardNumberHashes(anyCollection());
+    }
+
+    @Test
+    void exhaustedRange_throws() {
+        when(cardRepository.findExistingCardNumberHashes(anyCollection()))
+                .thenAnswer(inv -> new ArrayList<>(inv.getArgument(0, Collection.class)));
+
+        assertThrows(IllegalStateException.class, () -> allocator.generateUnique(3));
+    }
+
+    @Test
+    void parseBinRanges_rejectsInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> CardNumberAllocator.parseBinRanges("4000-40000", 16));
+        assertThrows(IllegalArgumentException.class, () -> CardNumberAllocator.parseBinRanges("abc", 16));
+        assertThrows(IllegalArgumentException.class, () -> CardNumberAllocator.parseBinRanges(" ", 16));
+        assertEquals(2, CardNumberAllocator.parseBinRanges("400000-400099,510000", 16).size());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class CardNumberBackfillJobTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    private EncryptionUtil encryptionUtil;
+
+    private BlindIndexUtil blindIndexUtil;
+
+    private CardNumberBackfillJob job;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        encryptionUtil = new EncryptionUtil("1234567890123456");
+        blindIndexUtil = new BlindIndexUtil("hmac-secret");
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+        when(jobLeaseService.tryAcquire(eq(CardNumberBackfillJob.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        job = new CardNumberBackfillJob(jdbcTemplate, new TransactionTemplate(transactionManager), encryptionUtil,
+                blindIndexUtil, jobLeaseService, entityManagerFactory, true, 2, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+    }
+
+    @Test
+    void backfill_producesLastFourDigitsAndHash() {
+        List<Object[]> updates = job.backfill(List.of(
+                row(1L, "1234567812345678"),
+                row(2L, "8765432187654321")));
+
+        assertEquals(2, updates.size());
+        for (Object[] update : updates) {
+            String number = (Long) update[2] == 1L ? "1234567812345678" : "8765432187654321";
+            assertEquals(number.substring(12), update[0]);
+            assertEquals(blindIndexUtil.hash(number), update[1]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void run_updatesOnlyEmptyColumnsChunkByChunk() {
+        when(jdbcTemplate.query(startsWith("SELECT id"), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(inv -> switch (((Long) inv.getArgument(2)).intValue()) {
+                    case 0 -> List.of(row(1L, "1234567812345678"), row(2L, "8765432187654321"));
+                    case 2 -> List.of(row(5L, "1111222233334444"));
+                    default -> List.of();
+                });
+        // Карту 2 уже заполнил другой узел: условие UPDATE её не трогает
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE cards"), anyList()))
+                .thenReturn(new int[]{1, 0}, new int[]{1});
+
+        long updated = job.run();
+
+        assertEquals(2, updated);
+        verify(jdbcTemplate, times(2)).batchUpdate(
+                eq("UPDATE cards SET card_number_last4 = ?, card_number_hash = ? " +
+                        "WHERE id = ? AND (card_number_last4 IS NULL OR card_number_hash IS NULL)"), anyList());
+        verify(transactionManager, times(2)).commit(any());
+        verify(cache).evict(Card.class, 5L);
+        verify(jobLeaseService).release(CardNumberBackfillJob.LEASE_NAME);
+    }
+
+    @Test
+    void run_leaseHeldByAnotherNode_skips() {
+        when(jobLeaseService.tryAcquire(eq(CardNumberBackfillJob.LEASE_NAME), any(Duration.class))).thenReturn(false);
+
+        assertEquals(0, job.run());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private CardNumberBackfillJob.CardRow row(long id, String number) {
+        return new CardNumberBackfillJob.CardRow(id, encryptionUtil.encrypt(number), 1);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.bankcards.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class CardReconciliationJobTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 1, 15);
+
+    private JdbcTemplate jdbcTemplate;
+    private JobLeaseService jobLeaseService;
+    private SimpleMeterRegistry meterRegistry;
+    private CardReconciliationJob job;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        jobLeaseService = mock(JobLeaseService.class);
+        when(jobLeaseService.tryAcquire(eq(CardReconciliationJob.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        when(jobLeaseService.currentDate()).thenReturn(TODAY);
+        meterRegistry = new SimpleMeterRegistry();
+        job = new CardReconciliationJob(jdbcTemplate, jobLeaseService, meterRegistry, 100, 2, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void run_coversWholeIdSpaceInRangesAndReportsMismatches() {
+        when(jdbcTemplate.query(startsWith("SELECT min(id)"), any(RowMapper.class)))
+                .thenReturn(List.<Object>of(new long[]{1, 250}));
+        List<long[]> ranges = Collections.synchronizedList(new ArrayList<>());
+        when(jdbcTemplate.query(startsWith("SELECT c.id"), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(inv -> {
+                    long from = inv.getArgument(2);
+                    long to = inv.getArgument(3);
+                    ranges.add(new long[]{from, to});
+                    return from == 1
+                            ? List.<Object[]>of(new Object[]{new Timestamp(0), 7L, BigDecimal.TEN, BigDecimal.ONE, new Timestamp(0)})
+                            : List.of();
+                });
+
+        long mismatches = job.run();
+
+        assertEquals(1, mismatches);
+        assertTrue(ranges.stream().allMatch(r -> r[1] - r[0] <= 100));
+        assertEquals(250, ranges.stream().mapToLong(r -> r[1] - r[0]).sum());
+        ArgumentCaptor<List<Object[]>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO reconciliation_mismatches"), inserted.capture());
+        assertEquals(7L, inserted.getValue().get(0)[1]);
+        assertEquals(1.0, meterRegistry.get("card.reconciliation.progress").gauge().value());
+        assertEquals(1.0, meterRegistry.get("card.reconciliation.mismatches").counter().count());
+        assertEquals(250.0, meterRegistry.get("card.reconciliation.ids.scanned").counter().count());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void run_noCards_doesNothing() {
+        List<Object> empty = new ArrayList<>();
+        empty.add(null);
+        when(jdbcTemplate.query(startsWith("SELECT min(id)"), any(RowMapper.class))).thenReturn(empty);
+
+        assertEquals(0, job.run());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void scheduledRun_leaseHeldByAnotherNode_skips() {
+        when(jobLeaseService.tryAcquire(eq(CardReconciliationJob.LEASE_NAME), any(Duration.class))).thenReturn(false);
+
+        job.scheduledRun();
+
+        verifyNoInteractions(jdbcTemplate);
+        verify(jobLeaseService, never()).markCompleted(any(), any());
+    }
+
+    @Test
+    void scheduledRun_alreadyCompletedToday_skips() {
+        when(jobLeaseService.isCompleted(CardReconciliationJob.LEASE_NAME, TODAY)).thenReturn(true);
+
+        job.scheduledRun();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void scheduledRun_lostLease_stopsAndDoesNotMarkCompleted() {
+        when(jdbcTemplate.query(startsWith("SELECT min(id)"), any(RowMapper.class)))
+                .thenReturn(List.<Object>of(new long[]{1, 1000}));
+        when(jdbcTemplate.query(startsWith("SELECT c.id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+        // Аренду взяли при старте, первое продление уже не удалось
+        when(jobLeaseService.tryAcquire(eq(CardReconciliationJob.LEASE_NAME), any(Duration.class)))
+                .thenReturn(true, false);
+
+        job.scheduledRun();
+
+        assertTrue(meterRegistry.get("card.reconciliation.ids.scanned").counter().count() < 1000);
+        verify(jobLeaseService, never()).markCompleted(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void scheduledRun_completed_isMarkedForToday() {
+        List<Object> empty = new ArrayList<>();
+        empty.add(null);
+        when(jdbcTemplate.query(startsWith("SELECT min(id)"), any(RowMapper.class))).thenReturn(empty);
+
+        job.scheduledRun();
+
+        verify(jobLeaseService).markCompleted(CardReconciliationJob.LEASE_NAME, TODAY);
+    }
+}
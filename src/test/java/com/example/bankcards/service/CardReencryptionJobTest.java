@@ -0,0 +1,70 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardReencryptionJobTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    private EncryptionUtil oldKey;
+    private EncryptionUtil rotated;
+    private CardReencryptionJob job;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        oldKey = new EncryptionUtil("1234567890123456");
+        rotated = new EncryptionUtil("6543210987654321", 2, "1:1234567890123456");
+        job = new CardReencryptionJob(jdbcTemplate, new TransactionTemplate(transactionManager), rotated,
+                entityManagerFactory, 100, 2, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+    }
+
+    @Test
+    void reencrypt_producesUpdatesWithCurrentKey() {
+        List<CardReencryptionJob.CardRow> rows = List.of(
+                new CardReencryptionJob.CardRow(1L, oldKey.encrypt("1234567812345678"), 1),
+                new CardReencryptionJob.CardRow(2L, oldKey.encrypt("8765432187654321"), 1));
+
+        List<Object[]> updates = job.reencrypt(rows, 2);
+
+        assertEquals(2, updates.size());
+        for (Object[] update : updates) {
+            String plain = rotated.decrypt((String) update[0], 2);
+            assertEquals(2, update[1]);
+            assertEquals(1, update[3]);
+            assertEquals((Long) update[2] == 1L ? "1234567812345678" : "8765432187654321", plain);
+        }
+    }
+
+    @Test
+    void getStatus_beforeStart_isIdle() {
+        assertFalse(job.getStatus().isRunning());
+        assertEquals(2, job.getStatus().getTargetKeyVersion());
+        assertEquals(0, job.getStatus().getProcessed());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.CursorUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Slice;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Списки карт на H2: число SQL-запросов не зависит от количества карт (нет N+1 по владельцам)
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(CardService.class)
+class CardServiceQueryCountTest {
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @MockBean
+    private BlindIndexUtil blindIndexUtil;
+
+    @MockBean
+    private TransferStrategy transferStrategy;
+
+    @MockBean
+    private CardLedger cardLedger;
+
+    @MockBean
+    private CardNumberAllocator cardNumberAllocator;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User john;
+
+    @BeforeEach
+    void setUp() {
+        john = entityManager.persist(new User("john", "pass", "USER"));
+        User jane = entityManager.persist(new User("jane", "pass", "USER"));
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(card("john" + i, john, CardStatus.ACTIVE));
+            entityManager.persist(card("jane" + i, jane, i % 2 == 0 ? CardStatus.ACTIVE : CardStatus.BLOCKED));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getUserCards_singleStatement() {
+        List<CardDTO> cards = cardService.getUserCards(john.getId());
+
+        assertEquals(5, cards.size());
+        assertEquals("john", cards.get(0).getOwnerUsername());
+        assertEquals("**** **** **** 0000", cards.get(0).getMaskedNumber());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCardsByUsername_singleStatement() {
+        List<CardDTO> cards = cardService.getCardsByUsername("john");
+
+        assertEquals(5, cards.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAllCards_singleStatement() {
+        assertEquals(10, cardService.getAllCards().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAllCardsPage_singleStatementWithoutCount() {
+        List<CardDTO> page = cardService.getAllCards(0, 4, null);
+        assertEquals(4, page.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        List<CardDTO> blocked = cardService.getAllCards(0, 10, "blocked");
+        assertEquals(2, blocked.size());
+        assertTrue(blocked.stream().allMatch(c -> "BLOCKED".equals(c.getStatus())));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAllCardsAfter_keysetPagesAreSingleStatement() {
+        List<Long> seen = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        while (true) {
+            statistics.clear();
+            Slice<CardDTO> slice = cardService.getAllCardsAfter(after, 3, null);
+            assertEquals(1, statistics.getPrepareStatementCount());
+            slice.getContent().forEach(c -> seen.add(c.getId()));
+            pages++;
+            if (!slice.hasNext()) {
+                break;
+            }
+            after = CursorUtil.encode(slice.getContent().get(slice.getContent().size() - 1).getId());
+        }
+
+        assertEquals(4, pages);
+        assertEquals(10, seen.size());
+        assertEquals(seen.stream().sorted().toList(), seen);
+    }
+
+    @Test
+    void getAllCardsAfter_filtersByStatus() {
+        Slice<CardDTO> blocked = cardService.getAllCardsAfter(null, 10, "BLOCKED");
+
+        assertEquals(2, blocked.getContent().size());
+        assertFalse(blocked.hasNext());
+    }
+
+    private Card card(String number, User owner, CardStatus status) {
+        Card card = new Card();
+        card.setCardNumberEncrypted("encrypted_" + number);
+        card.setCardNumberLast4("0000");
+        card.setOwner(owner);
+        card.setStatus(status);
+        card.setBalance(BigDecimal.TEN);
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        return card;
+    }
+}
@@ -1,12 +1,18 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferMode;
+import com.example.bankcards.dto.BatchTransferResultDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.*;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndexUtil;
 import com.example.bankcards.util.EncryptionUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -15,6 +21,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.TreeSet;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,6 +37,15 @@ class CardServiceTest {
     @Mock
     private EncryptionUtil encryptionUtil;
 
+    @Mock
+    private BlindIndexUtil blindIndexUtil;
+
+    @Mock
+    private CardLedger cardLedger;
+
+    @Mock
+    private CardNumberAllocator cardNumberAllocator;
+
     @InjectMocks
     private CardService cardService;
 
@@ -38,13 +54,19 @@ class CardServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        cardService = new CardService(cardRepository, userRepository, encryptionUtil);
+        cardService = new CardService(cardRepository, userRepository, encryptionUtil, blindIndexUtil,
+                new PessimisticTransferStrategy(cardRepository, cardLedger, new SimpleMeterRegistry()), cardLedger,
+                cardNumberAllocator);
 
         user = new User("john", "pass", "USER");
         user.setId(1L);
 
         when(encryptionUtil.encrypt(anyString())).thenAnswer(inv -> "encrypted_" + inv.getArgument(0));
         when(encryptionUtil.decrypt(anyString())).thenAnswer(inv -> inv.getArgument(0).toString().replace("encrypted_", ""));
+        when(blindIndexUtil.hash(anyString())).thenAnswer(inv -> "hash_" + inv.getArgument(0));
+        when(encryptionUtil.decryptAll(anyList())).thenAnswer(inv -> ((List<String>) inv.getArgument(0)).stream()
+                .map(s -> s.replace("encrypted_", ""))
+                .toList());
     }
 
     @Test
@@ -55,34 +77,92 @@ class CardServiceTest {
 
         CardDTO dto = cardService.createCard(1L, "1234567812345678");
 
+        verify(cardRepository).save(argThat(card -> "hash_1234567812345678".equals(card.getCardNumberHash())));
+        verify(encryptionUtil, times(1)).encrypt("1234567812345678");
+
         assertEquals("john", dto.getOwnerUsername());
+        assertEquals("**** **** **** 5678", dto.getMaskedNumber());
         assertEquals("ACTIVE", dto.getStatus());
         assertEquals(BigDecimal.ZERO, dto.getBalance());
     }
 
     @Test
-    void deposit_success() {
-        Card card = new Card();
-        card.setId(1L);
-        card.setBalance(BigDecimal.ZERO);
-        card.setStatus(CardStatus.ACTIVE);
-        card.setOwner(user);
-
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+    void createCard_withoutNumber_usesAllocatedNumberWithoutDuplicateCheck() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(cardNumberAllocator.next())
+                .thenReturn(new CardNumberAllocator.AllocatedNumber("4000001234567899", "hash_allocated"));
         when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
 
+        CardDTO dto = cardService.createCard(1L, null);
+
+        assertEquals("**** **** **** 7899", dto.getMaskedNumber());
+        verify(cardRepository).save(argThat(card -> "hash_allocated".equals(card.getCardNumberHash())));
+        verify(cardRepository, never()).existsByCardNumberHash(anyString());
+        verify(blindIndexUtil, never()).hash(anyString());
+    }
+
+    @Test
+    void createCard_duplicateNumber_throws() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(cardRepository.existsByCardNumberHash("hash_1234567812345678")).thenReturn(true);
+
+        assertThrows(RuntimeException.class, () -> cardService.createCard(1L, "1234567812345678"));
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    void findByCardNumber_usesBlindIndex() {
+        Card card = new Card(7L, "encrypted_1234567812345678", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.ONE, user);
+        card.setCardNumberLast4("5678");
+        when(cardRepository.findByCardNumberHash("hash_1234567812345678")).thenReturn(Optional.of(card));
+
+        Optional<CardDTO> found = cardService.findByCardNumber("1234567812345678");
+
+        assertTrue(found.isPresent());
+        assertEquals(7L, found.get().getId());
+        verify(encryptionUtil, never()).decrypt(anyString());
+    }
+
+    @Test
+    void deposit_success() {
+        CardDTO updated = new CardDTO(1L, "0000", CardStatus.ACTIVE, BigDecimal.valueOf(100), 1L, "john");
+        when(cardRepository.depositIfActive(1L, BigDecimal.valueOf(100))).thenReturn(1);
+        when(cardRepository.findDtoById(1L)).thenReturn(Optional.of(updated));
+
         CardDTO dto = cardService.deposit(1L, BigDecimal.valueOf(100));
         assertEquals(BigDecimal.valueOf(100), dto.getBalance());
+        verify(cardRepository, never()).findById(anyLong());
+        verify(cardRepository, never()).existsById(anyLong());
+        verify(cardRepository, never()).save(any(Card.class));
+        verify(cardLedger).recordDeposit(1L, BigDecimal.valueOf(100));
     }
 
     @Test
     void deposit_blockedCard_throws() {
-        Card card = new Card();
-        card.setStatus(CardStatus.BLOCKED);
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(cardRepository.depositIfActive(1L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.existsById(1L)).thenReturn(true);
 
-        assertThrows(RuntimeException.class,
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> cardService.deposit(1L, BigDecimal.TEN));
+        assertEquals("Only active cards can be recharged", ex.getMessage());
+        verifyNoInteractions(cardLedger);
+    }
+
+    @Test
+    void deposit_missingCard_throws() {
+        when(cardRepository.depositIfActive(1L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.existsById(1L)).thenReturn(false);
+
+        RuntimeException ex = assertThrows(RuntimeException.class,
                 () -> cardService.deposit(1L, BigDecimal.TEN));
+        assertEquals("Card not found", ex.getMessage());
+    }
+
+    @Test
+    void transfer_sameCard_throws() {
+        assertThrows(RuntimeException.class,
+                () -> cardService.transfer(1L, 1L, BigDecimal.TEN));
+        verifyNoInteractions(cardRepository);
     }
 
     @Test
@@ -99,13 +179,14 @@ class CardServiceTest {
         to.setStatus(CardStatus.ACTIVE);
         to.setBalance(BigDecimal.valueOf(50));
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(from));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(to));
 
         cardService.transfer(1L, 2L, BigDecimal.valueOf(100));
 
         assertEquals(BigDecimal.valueOf(100), from.getBalance());
         assertEquals(BigDecimal.valueOf(150), to.getBalance());
+        verify(cardLedger).recordTransfer(1L, 2L, BigDecimal.valueOf(100));
     }
 
     @Test
@@ -120,13 +201,71 @@ class CardServiceTest {
         to.setStatus(CardStatus.ACTIVE);
         to.setBalance(BigDecimal.ZERO);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(from));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(to));
 
         assertThrows(RuntimeException.class,
                 () -> cardService.transfer(1L, 2L, BigDecimal.valueOf(100)));
     }
 
+    @Test
+    void transferBatch_bestEffort_appliesValidTransfers() {
+        Card first = new Card(1L, "encrypted_1", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(100), user);
+        Card second = new Card(2L, "encrypted_2", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(10), user);
+        when(cardRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(first, second));
+
+        TransferRequest valid = transferRequest(1L, 2L, 30);
+
+        List<BatchTransferResultDTO> results = cardService.transferBatch(List.of(
+                valid,
+                transferRequest(2L, 1L, 500),
+                transferRequest(1L, 3L, 5)
+        ), BatchTransferMode.BEST_EFFORT);
+
+        assertEquals(BatchTransferResultDTO.APPLIED, results.get(0).getStatus());
+        assertEquals("Not enough funds", results.get(1).getError());
+        assertEquals("Target card not found", results.get(2).getError());
+        assertEquals(BigDecimal.valueOf(70), first.getBalance());
+        assertEquals(BigDecimal.valueOf(40), second.getBalance());
+        verify(cardRepository).findAllByIdForUpdate(new TreeSet<>(List.of(1L, 2L, 3L)));
+        verify(cardRepository, never()).findById(anyLong());
+        verify(cardLedger).recordTransfers(List.of(valid));
+    }
+
+    @Test
+    void transferBatch_allOrNothing_restoresBalancesOnError() {
+        Card first = new Card(1L, "encrypted_1", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(100), user);
+        Card second = new Card(2L, "encrypted_2", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(10), user);
+        when(cardRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(first, second));
+
+        List<BatchTransferResultDTO> results = cardService.transferBatch(List.of(
+                transferRequest(1L, 2L, 30),
+                transferRequest(2L, 1L, 500)
+        ), BatchTransferMode.ALL_OR_NOTHING);
+
+        assertEquals(BatchTransferResultDTO.ROLLED_BACK, results.get(0).getStatus());
+        assertEquals(BatchTransferResultDTO.REJECTED, results.get(1).getStatus());
+        assertEquals(BigDecimal.valueOf(100), first.getBalance());
+        assertEquals(BigDecimal.valueOf(10), second.getBalance());
+        verifyNoInteractions(cardLedger);
+    }
+
+    @Test
+    void transfer_locksLowerIdFirst() {
+        Card low = new Card(1L, "encrypted_1", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(10), user);
+        Card high = new Card(2L, "encrypted_2", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(100), user);
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(low));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(high));
+
+        cardService.transfer(2L, 1L, BigDecimal.valueOf(40));
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findByIdForUpdate(1L);
+        inOrder.verify(cardRepository).findByIdForUpdate(2L);
+        assertEquals(BigDecimal.valueOf(50), low.getBalance());
+        assertEquals(BigDecimal.valueOf(60), high.getBalance());
+    }
+
     @Test
     void requestBlock_success() {
         Card card = new Card();
@@ -141,16 +280,33 @@ class CardServiceTest {
     }
 
     @Test
-    void updateExpiredCards_setsExpired() {
-        Card card = new Card();
-        card.setOwner(user);
-        card.setStatus(CardStatus.ACTIVE);
-        card.setExpirationDate(LocalDate.now().minusDays(1));
+    void getAllCards_masksWithoutDecrypting() {
+        when(cardRepository.findAllDtos()).thenReturn(List.of(
+                new CardDTO(1L, "5678", CardStatus.ACTIVE, BigDecimal.ONE, 1L, "john"),
+                new CardDTO(2L, "4321", CardStatus.BLOCKED, BigDecimal.TEN, 1L, "john")));
+
+        List<CardDTO> cards = cardService.getAllCards();
+
+        assertEquals("**** **** **** 5678", cards.get(0).getMaskedNumber());
+        assertEquals("**** **** **** 4321", cards.get(1).getMaskedNumber());
+        assertEquals("BLOCKED", cards.get(1).getStatus());
+        verify(encryptionUtil, never()).decrypt(anyString());
+        verify(encryptionUtil, never()).decryptAll(anyList());
+    }
 
-        when(cardRepository.findAll()).thenReturn(List.of(card));
-        when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
+    @Test
+    void getCardsByUsername_unknownUser_throws() {
+        when(cardRepository.findDtosByOwnerUsername("ghost")).thenReturn(List.of());
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> cardService.getCardsByUsername("ghost"));
+    }
 
-        cardService.updateExpiredCards();
-        assertEquals(CardStatus.EXPIRED, card.getStatus());
+    private TransferRequest transferRequest(Long from, Long to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(BigDecimal.valueOf(amount));
+        return request;
     }
 }
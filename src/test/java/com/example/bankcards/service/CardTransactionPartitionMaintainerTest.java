@@ -0,0 +1,62 @@
+package com.example.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CardTransactionPartitionMaintainerTest {
+
+    @Test
+    void ensurePartitions_createsCurrentAndFutureMonths() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CardTransactionPartitionMaintainer maintainer = new CardTransactionPartitionMaintainer(jdbcTemplate,
+                mock(JobLeaseService.class), 2);
+
+        maintainer.ensurePartitions(YearMonth.of(2025, 11));
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS card_transactions_2025_11 PARTITION OF " +
+                "card_transactions FOR VALUES FROM ('2025-11-01') TO ('2025-12-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS card_transactions_2025_12 PARTITION OF " +
+                "card_transactions FOR VALUES FROM ('2025-12-01') TO ('2026-01-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS card_transactions_2026_01 PARTITION OF " +
+                "card_transactions FOR VALUES FROM ('2026-01-01') TO ('2026-02-01')");
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void ensurePartitions_leaseHeldByAnotherNode_skips() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        JobLeaseService leases = mock(JobLeaseService.class);
+        when(leases.tryAcquire(eq(CardTransactionPartitionMaintainer.LEASE_NAME), any(Duration.class)))
+                .thenReturn(false);
+
+        new CardTransactionPartitionMaintainer(jdbcTemplate, leases, 2).ensurePartitions();
+
+        verifyNoInteractions(jdbcTemplate);
+        verify(leases, never()).release(anyString());
+    }
+
+    @Test
+    void ensurePartitions_failure_isLoggedAndLeaseReleased() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        JobLeaseService leases = mock(JobLeaseService.class);
+        when(leases.tryAcquire(eq(CardTransactionPartitionMaintainer.LEASE_NAME), any(Duration.class)))
+                .thenReturn(true);
+        when(leases.currentDate()).thenReturn(LocalDate.of(2025, 11, 5));
+        doThrow(new DataAccessResourceFailureException("duplicate key value violates pg_type"))
+                .when(jdbcTemplate).execute(anyString());
+
+        assertDoesNotThrow(() -> new CardTransactionPartitionMaintainer(jdbcTemplate, leases, 2).ensurePartitions());
+        verify(leases).release(CardTransactionPartitionMaintainer.LEASE_NAME);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyService idempotencyService;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        idempotencyService = new IdempotencyService(jdbcTemplate, new TransactionTemplate(transactionManager),
+                new ObjectMapper(), 24, 100);
+    }
+
+    @Test
+    void execute_withoutKey_runsActionWithoutStore() {
+        assertEquals("ok", idempotencyService.execute("john", null, "transfer:1:2:10", String.class, this::action));
+
+        assertEquals(1, calls.get());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void execute_repeatedKey_returnsStoredResponseFromCache() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        String first = idempotencyService.execute("john", "k1", "transfer:1:2:10", String.class, this::action);
+        String second = idempotencyService.execute("john", "k1", "transfer:1:2:10", String.class, this::action);
+
+        assertEquals("ok", first);
+        assertEquals("ok", second);
+        assertEquals(1, calls.get());
+        verify(jdbcTemplate).update(startsWith("UPDATE"), any(Object[].class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void execute_keyStoredByAnotherNode_replaysFromDatabase() {
+        IdempotencyService.StoredResponse stored = new IdempotencyService.StoredResponse(
+                sha256Of("deposit:1:100"),
+                "{\"id\":1,\"maskedNumber\":\"**** **** **** 1234\",\"status\":\"ACTIVE\",\"balance\":100," +
+                        "\"ownerId\":1,\"ownerUsername\":\"john\"}");
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(0);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(stored);
+
+        CardDTO card = idempotencyService.execute("john", "k1", "deposit:1:100", CardDTO.class, () -> {
+            calls.incrementAndGet();
+            return new CardDTO();
+        });
+
+        assertEquals(0, calls.get());
+        assertEquals(BigDecimal.valueOf(100), card.getBalance());
+        assertEquals("**** **** **** 1234", card.getMaskedNumber());
+    }
+
+    @Test
+    void execute_sameKeyDifferentRequest_throwsConflict() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+        idempotencyService.execute("john", "k1", "transfer:1:2:10", String.class, this::action);
+
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.execute("john", "k1", "transfer:1:2:99", String.class, this::action));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_failedAction_isNotStored() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        assertThrows(RuntimeException.class, () -> idempotencyService.execute("john", "k1", "transfer:1:2:10",
+                String.class, () -> { throw new RuntimeException("Not enough funds"); }));
+
+        verify(jdbcTemplate).update(startsWith("DELETE"), any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE"), any(Object[].class));
+    }
+
+    // Перевод с ключом идёт вне транзакции резерва: конфликт версий ловится и повторяется внутри стратегии,
+    // ответ сохраняется, резерв не откатывается
+    @Test
+    void execute_optimisticTransferConflict_isRetriedAndStored() {
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger openDuringAttempt = new AtomicInteger();
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> {
+            open.incrementAndGet();
+            return new SimpleTransactionStatus();
+        });
+        doAnswer(inv -> {
+            open.decrementAndGet();
+            if (attempts.get() == 1 && openDuringAttempt.get() > 0) {
+                openDuringAttempt.set(0);
+                throw new ObjectOptimisticLockingFailureException(Card.class, 1L);
+            }
+            openDuringAttempt.set(0);
+            return null;
+        }).when(transactionManager).commit(any());
+        doAnswer(inv -> open.decrementAndGet()).when(transactionManager).rollback(any());
+
+        User user = new User("john", "pass", "USER");
+        user.setId(1L);
+        CardRepository cardRepository = mock(CardRepository.class);
+        when(cardRepository.findById(1L)).thenAnswer(inv -> {
+            attempts.incrementAndGet();
+            openDuringAttempt.set(open.get());
+            return Optional.of(new Card(1L, "e1", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(200), user));
+        });
+        when(cardRepository.findById(2L)).thenAnswer(inv ->
+                Optional.of(new Card(2L, "e2", LocalDate.now(), CardStatus.ACTIVE, BigDecimal.ZERO, user)));
+        OptimisticTransferStrategy strategy = new OptimisticTransferStrategy(cardRepository, mock(CardLedger.class),
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), 3, 0);
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        String result = idempotencyService.execute("john", "k1", "transfer:1:2:10", String.class, () -> {
+            assertEquals(0, open.get(), "transfer must not run inside the reservation transaction");
+            strategy.transfer(1L, 2L, BigDecimal.TEN);
+            return "Transfer successful";
+        });
+
+        assertEquals("Transfer successful", result);
+        assertEquals(2, attempts.get());
+        assertEquals(0, open.get());
+        verify(jdbcTemplate).update(startsWith("UPDATE"), any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), any(Object[].class));
+    }
+
+    @Test
+    void execute_tooLongKey_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute("john", "x".repeat(129), "transfer:1:2:10", String.class, this::action));
+    }
+
+    private String action() {
+        calls.incrementAndGet();
+        return "ok";
+    }
+
+    private static String sha256Of(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
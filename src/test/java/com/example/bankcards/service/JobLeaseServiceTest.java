@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest(properties = "spring.liquibase.enabled=false")
+class JobLeaseServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JobLeaseService nodeA;
+    private JobLeaseService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS job_leases (name VARCHAR(100) PRIMARY KEY, " +
+                "owner VARCHAR(255) NOT NULL, locked_until TIMESTAMP WITH TIME ZONE NOT NULL, completed_on DATE)");
+        nodeA = new JobLeaseService(jdbcTemplate, "node-a");
+        nodeB = new JobLeaseService(jdbcTemplate, "node-b");
+    }
+
+    @Test
+    void tryAcquire_onlyOneNodeHoldsLease() {
+        assertTrue(nodeA.tryAcquire("job", Duration.ofMinutes(5)));
+        assertFalse(nodeB.tryAcquire("job", Duration.ofMinutes(5)));
+        // Владелец продлевает свою аренду
+        assertTrue(nodeA.tryAcquire("job", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void tryAcquire_afterRelease_otherNodeTakesOver() {
+        assertTrue(nodeA.tryAcquire("job", Duration.ofMinutes(5)));
+        nodeA.release("job");
+
+        assertTrue(nodeB.tryAcquire("job", Duration.ofMinutes(5)));
+        assertFalse(nodeA.tryAcquire("job", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void markCompleted_visibleToOtherNodes() {
+        LocalDate today = nodeA.currentDate();
+        assertTrue(nodeA.tryAcquire("daily", Duration.ofMinutes(5)));
+        assertFalse(nodeB.isCompleted("daily", today));
+
+        nodeA.markCompleted("daily", today);
+
+        assertTrue(nodeB.isCompleted("daily", today));
+        assertFalse(nodeB.isCompleted("daily", today.plusDays(1)));
+    }
+
+    @Test
+    void markCompleted_byNodeWithoutLease_isIgnored() {
+        LocalDate today = nodeA.currentDate();
+        assertTrue(nodeA.tryAcquire("daily", Duration.ofMinutes(5)));
+
+        nodeB.markCompleted("daily", today);
+
+        assertFalse(nodeA.isCompleted("daily", today));
+    }
+
+    @Test
+    void tryAcquire_expiredLease_otherNodeTakesOver() {
+        assertTrue(nodeA.tryAcquire("job", Duration.ofSeconds(-1)));
+
+        assertTrue(nodeB.tryAcquire("job", Duration.ofMinutes(5)));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OptimisticTransferStrategyTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardLedger cardLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OptimisticTransferStrategy strategy;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        strategy = new OptimisticTransferStrategy(cardRepository, cardLedger, new TransactionTemplate(transactionManager),
+                meterRegistry, 3, 0);
+        user = new User("john", "pass", "USER");
+        user.setId(1L);
+    }
+
+    @Test
+    void transfer_retriesAfterVersionConflict() {
+        when(cardRepository.findById(1L)).thenAnswer(inv -> Optional.of(card(1L, 200)));
+        when(cardRepository.findById(2L)).thenAnswer(inv -> Optional.of(card(2L, 0)));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        strategy.transfer(1L, 2L, BigDecimal.TEN);
+
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(1.0, meterRegistry.get("card.transfer.conflicts").counter().count());
+    }
+
+    @Test
+    void transfer_givesUpAfterMaxAttempts() {
+        when(cardRepository.findById(1L)).thenAnswer(inv -> Optional.of(card(1L, 200)));
+        when(cardRepository.findById(2L)).thenAnswer(inv -> Optional.of(card(2L, 0)));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .when(transactionManager).commit(any());
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> strategy.transfer(1L, 2L, BigDecimal.TEN));
+
+        verify(transactionManager, times(3)).commit(any());
+        assertEquals(1.0, meterRegistry.get("card.transfer.retries.exhausted").counter().count());
+    }
+
+    @Test
+    void transfer_businessErrorIsNotRetried() {
+        when(cardRepository.findById(1L)).thenAnswer(inv -> Optional.of(card(1L, 5)));
+        when(cardRepository.findById(2L)).thenAnswer(inv -> Optional.of(card(2L, 0)));
+
+        assertThrows(RuntimeException.class, () -> strategy.transfer(1L, 2L, BigDecimal.TEN));
+
+        verify(cardRepository, times(1)).findById(1L);
+    }
+
+    private Card card(Long id, long balance) {
+        return new Card(id, "encrypted_" + id, LocalDate.now(), CardStatus.ACTIVE, BigDecimal.valueOf(balance), user);
+    }
+}
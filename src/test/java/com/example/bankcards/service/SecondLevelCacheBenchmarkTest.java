@@ -0,0 +1,205 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndexUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Сколько обращений к БД экономит кэш второго уровня на типичной смеси запросов карточных эндпоинтов.
+// Каждый «запрос» идёт в своей транзакции, как в контроллере; без кэша — те же запросы со сбросом всех регионов.
+// Сам замер долгий, поэтому в обычный прогон не входит: mvn -Pbenchmark test
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(CardService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SecondLevelCacheBenchmarkTest.class);
+
+    private static final int USERS = 20;
+    private static final int CARDS_PER_USER = 3;
+    private static final int ROUNDS = 5;
+    // Запросов на одного пользователя за проход смеси: аутентификация, пополнение, баланс каждой карты,
+    // запрос блокировки остальных
+    private static final int REQUESTS_PER_PASS = 2 + CARDS_PER_USER + (CARDS_PER_USER - 1);
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @MockBean
+    private BlindIndexUtil blindIndexUtil;
+
+    @MockBean
+    private TransferStrategy transferStrategy;
+
+    @MockBean
+    private CardLedger cardLedger;
+
+    @MockBean
+    private CardNumberAllocator cardNumberAllocator;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+    private final List<String> usernames = new ArrayList<>();
+    private final List<List<Long>> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int u = 0; u < USERS; u++) {
+                User user = userRepository.save(new User("bench" + u, "pass", "USER"));
+                List<Long> ids = new ArrayList<>();
+                for (int c = 0; c < CARDS_PER_USER; c++) {
+                    ids.add(cardRepository.save(card("bench" + u + "_" + c, user)).getId());
+                }
+                usernames.add(user.getUsername());
+                cardIds.add(ids);
+            }
+        });
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            cardRepository.deleteAllInBatch();
+            userRepository.deleteAllInBatch();
+        });
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void requestMix_cacheSavesDatabaseRoundTrips() {
+        // Первый прогон переводит карты в BLOCK_REQUESTED; пополнения идут в каждом прогоне
+        runMix(false);
+        long withoutCache = runMix(true);
+        // Прогрев регионов, сброшенных предыдущим прогоном
+        runMix(false);
+        long withCache = runMix(false);
+        int passes = ROUNDS * USERS;
+        int requests = passes * REQUESTS_PER_PASS;
+        double savedPerRequest = (double) (withoutCache - withCache) / requests;
+
+        log.info("Second-level cache, {} requests: off {} statements, on {}, saved {} per request",
+                requests, withoutCache, withCache, String.format("%.2f", savedPerRequest));
+
+        // Без кэша на проход: findByUsername, пополнение (UPDATE и проекция ответа), баланс трёх карт,
+        // запрос блокировки остальных карт (карта и её владелец)
+        long perPassWithoutCache = 1 + 2 + CARDS_PER_USER + 2 * (CARDS_PER_USER - 1);
+        assertEquals(perPassWithoutCache * passes, withoutCache);
+        // С кэшем: пользователь из кэша запросов, пополнение те же 2 запроса; оно сбрасывает регион карт,
+        // поэтому баланс снова читает каждую карту, а запрос блокировки берёт карты и владельца из кэша
+        long perPassWithCache = 2 + CARDS_PER_USER;
+        assertEquals(perPassWithCache * passes, withCache);
+        assertEquals((double) (perPassWithoutCache - perPassWithCache) / REQUESTS_PER_PASS, savedPerRequest, 1e-9);
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+    }
+
+    @Test
+    void nativeDeposit_evictsOnlyCardRegion() {
+        Long cardId = cardIds.get(0).get(0);
+        Long ownerId = transactionTemplate.execute(status ->
+                cardRepository.findById(cardId).orElseThrow().getOwner().getId());
+        transactionTemplate.executeWithoutResult(status -> userRepository.findById(ownerId).orElseThrow());
+
+        cardService.deposit(cardId, BigDecimal.ONE);
+
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> userRepository.findById(ownerId).orElseThrow());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        BigDecimal balance = transactionTemplate.execute(status -> cardService.getBalance(cardId));
+        assertEquals(new BigDecimal("11.00"), balance);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // Смесь запросов пользователя: аутентификация по username, пополнение первой карты,
+    // баланс каждой карты и запрос блокировки остальных. Возвращает число подготовленных SQL-запросов
+    private long runMix(boolean evictBeforeEachRequest) {
+        statistics.clear();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int u = 0; u < USERS; u++) {
+                String username = usernames.get(u);
+                List<Long> ids = cardIds.get(u);
+                request(evictBeforeEachRequest, () -> userRepository.findByUsername(username).orElseThrow());
+                request(evictBeforeEachRequest, () -> cardService.deposit(ids.get(0), BigDecimal.ONE));
+                for (Long cardId : ids) {
+                    request(evictBeforeEachRequest, () -> cardService.getBalance(cardId));
+                }
+                for (Long cardId : ids.subList(1, ids.size())) {
+                    request(evictBeforeEachRequest, () -> cardService.requestBlock(cardId, username));
+                }
+            }
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void request(boolean evictBefore, Runnable action) {
+        if (evictBefore) {
+            sessionFactory.getCache().evictAllRegions();
+        }
+        transactionTemplate.executeWithoutResult(status -> action.run());
+    }
+
+    private Card card(String number, User owner) {
+        Card card = new Card();
+        card.setCardNumberEncrypted("encrypted_" + number);
+        card.setCardNumberLast4("0000");
+        card.setOwner(owner);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(BigDecimal.TEN);
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        return card;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CustomUserDetailsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private SessionFactory sessionFactory;
+
+    @Mock
+    private Cache secondLevelCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UserImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+        importService = new UserImportService(jdbcTemplate, new TransactionTemplate(transactionManager),
+                userDetailsService, entityManagerFactory, objectMapper, new SimpleMeterRegistry(), 3, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void importUsers_csv_reportsEveryLineAndInsertsInBatches() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("john"));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT"), anyList())).thenReturn(new int[]{1, 1}, new int[]{1});
+
+        String csv = """
+                username,password,role
+                alice,secret1,
+                john,secret2,USER
+                "bob, jr",\"pa,ss\"\"word\",admin
+                al,short
+                alice,secret3
+                carol,secret4,USER
+                """;
+
+        List<JsonNode> report = run(csv, UserImportService.Format.CSV);
+
+        assertEquals(List.of("CREATED", "DUPLICATE", "CREATED", "INVALID", "DUPLICATE", "CREATED"),
+                report.stream().map(r -> r.get("status").asText()).toList());
+        assertEquals(2, report.get(0).get("line").asLong());
+        assertEquals("bob, jr", report.get(2).get("username").asText());
+
+        // Один SELECT и один батч на порцию из трёх строк
+        verify(jdbcTemplate, times(2)).queryForList(startsWith("SELECT"), eq(String.class), any(Object[].class));
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT"), batches.capture());
+        Object[] bob = batches.getAllValues().get(0).get(1);
+        assertEquals("bob, jr", bob[0]);
+        assertTrue(new BCryptPasswordEncoder().matches("pa,ss\"word", (String) bob[1]));
+        assertEquals("ADMIN", bob[2]);
+        verify(userDetailsService).evict("carol");
+        verify(secondLevelCache, times(2))
+                .evictQueryRegion(UserRepository.USERS_BY_USERNAME_REGION);
+    }
+
+    @Test
+    void importUsers_ndjson_conflictOnInsertIsDuplicate() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of());
+        // dave занят параллельной регистрацией между SELECT и INSERT
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT"), anyList())).thenReturn(new int[]{0}, new int[]{1});
+
+        String ndjson = """
+                {"username":"dave","password":"secret1"}
+                {"username":"erin","password":"secret2","role":"ROOT"}
+                not json
+                {"username":"frank","password":"secret3","role":"user"}
+                """;
+
+        List<JsonNode> report = run(ndjson, UserImportService.Format.NDJSON);
+
+        assertEquals(List.of("DUPLICATE", "INVALID", "INVALID", "CREATED"),
+                report.stream().map(r -> r.get("status").asText()).toList());
+        assertEquals("Unknown role: ROOT", report.get(1).get("error").asText());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void splitCsv_handlesQuotes() {
+        assertEquals(List.of("a", "b,c", "d\"e", ""), UserImportService.splitCsv("a,\"b,c\",\"d\"\"e\","));
+        assertNull(UserImportService.splitCsv("a,\"b"));
+    }
+
+    private List<JsonNode> run(String body, UserImportService.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        importService.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, out);
+        List<JsonNode> report = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            report.add(objectMapper.readTree(line));
+        }
+        return report;
+    }
+}
@@ -2,12 +2,20 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.TokenRevocationStore;
+import com.example.bankcards.util.CursorUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,6 +31,12 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private TokenRevocationStore revocationStore;
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
     @InjectMocks
     private UserService userService;
 
@@ -47,6 +61,7 @@ class UserServiceTest {
         assertEquals(username, user.getUsername());
         assertEquals(encodedPassword, user.getPassword());
         assertEquals("USER", user.getRole());
+        verify(userDetailsService, times(1)).evict(username);
     }
 
     @Test
@@ -71,10 +86,12 @@ class UserServiceTest {
     }
 
     @Test
-    void getAllUsers_returnsList() {
-        when(userRepository.findAll()).thenReturn(List.of(new User("a", "b", "USER")));
-        List<User> users = userService.getAllUsers();
-        assertEquals(1, users.size());
+    void getUsersAfter_usesDecodedCursor() {
+        Slice<User> slice = new SliceImpl<>(List.of(new User("a", "b", "USER")));
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(42L, PageRequest.of(0, 20))).thenReturn(slice);
+
+        assertSame(slice, userService.getUsersAfter(CursorUtil.encode(42L), 20));
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsersAfter(null, 0));
     }
 
     @Test
@@ -82,4 +99,37 @@ class UserServiceTest {
         userService.deleteUser(1L);
         verify(userRepository, times(1)).deleteById(1L);
     }
+
+    @Test
+    void deleteUser_revokesIssuedTokens() {
+        User user = new User("john", "pass", "USER");
+        user.setId(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        userService.deleteUser(1L);
+
+        verify(revocationStore, times(1)).revokeAll("john");
+        verify(userDetailsService, times(1)).evict("john");
+        verify(userRepository, times(1)).deleteById(1L);
+    }
+
+    @Test
+    void deleteUser_inTransaction_evictsCacheOnlyAfterCommit() {
+        User user = new User("john", "pass", "USER");
+        user.setId(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.deleteUser(1L);
+
+            verify(revocationStore).revokeAll("john");
+            verify(userRepository).deleteById(1L);
+            verify(userDetailsService, never()).evict(any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(userDetailsService).evict("john");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
 }